@@ -0,0 +1,81 @@
+import java.math.BigInteger;
+
+/**
+ * Precomputed multiples of a fixed point for the Lim-Lee comb method.
+ * A scalar of up to TEETH * SPACING * BLOCKS bits is read as BLOCKS combs of TEETH bits that are
+ * SPACING bits apart. For every block the table holds all 2^TEETH sums of its teeth's multiples
+ * of the base point, so a multiplication costs SPACING - 1 doublings and SPACING * BLOCKS
+ * additions, against about 446 doublings and 223 additions for double-and-add.
+ * Table entries are normalized to Z = 1 so that the evaluation can use mixed additions.
+ * This implementation was inspired by:
+ * - https://link.springer.com/chapter/10.1007/3-540-48658-5_11 (Lim and Lee, More Flexible Exponentiation with Precomputation)
+ * - https://www.hyperelliptic.org/tanja/vortraege/comb.pdf
+ */
+public class CombTable {
+    // Number of teeth of a comb, the table index width
+    private static final int TEETH = 6;
+    // Distance in bits between two teeth
+    private static final int SPACING = 25;
+    // Number of combs, TEETH * SPACING * BLOCKS = 450 covers scalars below 2^446
+    private static final int BLOCKS = 3;
+
+    // table[j][v] = sum over the set bits i of v of 2^(SPACING * (TEETH * j + i)) * base
+    private final ExtendedPoint[][] table = new ExtendedPoint[BLOCKS][1 << TEETH];
+
+    /**
+     * Builds the table for the given base point.
+     * Takes TEETH * SPACING * BLOCKS doublings, (2^TEETH - 1) * BLOCKS additions and one
+     * inversion per block, about as much as two variable-base multiplications, so it only pays
+     * off for points that are multiplied repeatedly.
+     *
+     * @param base the fixed point, of order r
+     */
+    public CombTable(EllipticCurvePoint base) {
+        ExtendedPoint tooth = ExtendedPoint.fromAffine(base);
+        for (int j = 0; j < BLOCKS; j++) {
+            table[j][0] = ExtendedPoint.neutral();
+            for (int i = 0; i < TEETH; i++) {
+                // Entries with highest bit i extend the entries below 2^i by this tooth.
+                for (int v = 0; v < (1 << i); v++) {
+                    ExtendedPoint entry = table[j][v].copy();
+                    entry.add(tooth);
+                    table[j][v | (1 << i)] = entry;
+                }
+                for (int k = 0; k < SPACING; k++) {
+                    tooth.twice();
+                }
+            }
+            ExtendedPoint.normalizeAll(table[j]);
+        }
+    }
+
+    /**
+     * Computes s * base.
+     *
+     * @param s the scalar, reduced mod r first
+     * @return the point s * base, the neutral element (0, 1) when s = 0 (mod r)
+     */
+    public EllipticCurvePoint multiply(BigInteger s) {
+        BigInteger scalar = s.mod(EllipticCurve.r);
+        ExtendedPoint P = ExtendedPoint.neutral();
+        for (int m = SPACING - 1; m >= 0; m--) {
+            // P is still the neutral element in the first column, nothing to double.
+            if (m < SPACING - 1) {
+                P.twice();
+            }
+            for (int j = 0; j < BLOCKS; j++) {
+                // Gather the comb bits m, m + SPACING, ..., one per tooth of block j.
+                int v = 0;
+                for (int i = 0; i < TEETH; i++) {
+                    if (scalar.testBit(SPACING * (TEETH * j + i) + m)) {
+                        v |= 1 << i;
+                    }
+                }
+                if (v != 0) {
+                    P.addAffine(table[j][v]);
+                }
+            }
+        }
+        return P.toAffine();
+    }
+}
@@ -1,5 +1,19 @@
-import java.math.BigInteger;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 /**
  * A utility class that provides cryptographic operations including hashing,
@@ -10,6 +24,27 @@ import java.util.Arrays;
  * - https://github.com/NWc0de/KeccakUtils/blob/master/src/crypto/keccak/KCrypt.java
  */
 public class CryptoUtils {
+    // 64-bit view used to XOR byte arrays a word at a time
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    // Chunk size of the KangarooTwelve tree
+    private static final int K12_CHUNK_SIZE = 8192;
+    // Number of KangarooTwelve chunks read from a channel and hashed in parallel at a time
+    private static final int K12_BATCH_CHUNKS = 1024;
+    // right_encode(0) as this class has always written it, {1, 0} rather than the standard {0, 1};
+    // every KMACXOF256 message ends with it. Shared by all KMAC sponges and never modified.
+    private static final byte[] RIGHT_ENCODE_ZERO = {1, 0};
+    // Maximum number of cached cSHAKE prefix states
+    private static final int PREFIX_CACHE_LIMIT = 64;
+    // Sponge states positioned right after bytepad(encode_string(N) || encode_string(S), 136)
+    private static final Map<PrefixKey, KeccakSponge> PREFIX_STATES = new ConcurrentHashMap<>();
+
+    static {
+        // Preload the KMAC prefix blocks for the customization strings used by Main
+        for (String customization : new String[] {"D", "T", "S", "SKE", "SKA", "SK", "PK", "PKE", "PKA"}) {
+            prefixState("KMAC".getBytes(), customization.getBytes(), 24);
+        }
+    }
+
     /**
      * The SHAKE256 function.
      * Produces a variable length message digest based on the keccak-f permutations.
@@ -19,14 +54,8 @@ public class CryptoUtils {
      * @return A byte array representing the message digest
      */
     public static byte[] SHAKE256(byte[] in, int bitLen) {
-        // Copy the input byte array to create a new array.
-        byte[] uin = Arrays.copyOf(in, in.length + 1);
-        // The rate is fixed at 136 bytes, calculate the number of bytes to pad.
-        int bytesToPad = 136 - in.length % (136);
-        // Perform padding and add the padding suffix.
-        uin[in.length] = bytesToPad == 1 ? (byte) 0x9f : 0x1f;
-        // Calculate the SHAKE256 hash using the sponge construction and return it.
-        return sponge(uin, bitLen, 512);
+        // Absorb the input in place; the padding is applied inside the sponge state.
+        return newSHAKE256().update(in).squeeze(bitLen);
     }
 
     /**
@@ -40,19 +69,46 @@ public class CryptoUtils {
      * @return A byte array representing the message digest
      */
     public static byte[] cSHAKE256(byte[] in, int bitLength, byte[] functionName, byte[] customStr) {
-        // If both function name and custom string are empty, fallback to SHAKE 256
-        if (functionName.length == 0 && customStr.length == 0) {
-            return SHAKE256(in, bitLength);
+        // The sponge absorbs the padded name and custom string, then the input without copying it
+        return newCSHAKE256(functionName, customStr).update(in).squeeze(bitLength);
+    }
+
+    /**
+     * The cSHAKE256 function over an input given in parts.
+     * The parts are absorbed in order as if they were concatenated, without building the
+     * concatenation.
+     *
+     * @param bitLength The desired bit length of the output
+     * @param functionName A byte array representing the function's name
+     * @param customStr A custom string as byte array
+     * @param parts The input byte arrays, in order
+     * @return A byte array representing the message digest
+     */
+    public static byte[] cSHAKE256Parts(int bitLength, byte[] functionName, byte[] customStr, byte[]... parts) {
+        KeccakSponge sponge = newCSHAKE256(functionName, customStr);
+        for (byte[] part : parts) {
+            sponge.update(part);
         }
+        return sponge.squeeze(bitLength);
+    }
 
-        // Concatenate the encoded functionName and customStr
-        byte[] fin = concat(encodeString(functionName), encodeString(customStr));
-        // Pad the concatenated data to a multiple of 136 bytes (the rate of cSHAKE256)
-        fin = concat(bytePad(fin, 136), in);
-        // Append a 0x04 byte (byte indicating cSHAKE) to the final data
-        fin = concat(fin, new byte[] {0x04});
-        // Calculate the cSHAKE256 hash using the sponge construction and return it
-        return sponge(fin, bitLength, 512);
+    /**
+     * The cSHAKE256 function over an input given as a sequence of buffers.
+     * The remaining bytes of every buffer are absorbed in order; the buffer positions are left unchanged.
+     *
+     * @param bitLength The desired bit length of the output
+     * @param functionName A byte array representing the function's name
+     * @param customStr A custom string as byte array
+     * @param parts The input buffers, in order
+     * @return A byte array representing the message digest
+     */
+    public static byte[] cSHAKE256Buffers(int bitLength, byte[] functionName, byte[] customStr,
+                                          ByteBuffer... parts) {
+        KeccakSponge sponge = newCSHAKE256(functionName, customStr);
+        for (ByteBuffer part : parts) {
+            sponge.update(part.duplicate());
+        }
+        return sponge.squeeze(bitLength);
     }
 
     /**
@@ -66,203 +122,726 @@ public class CryptoUtils {
      * @return A byte array representing the hash text
      */
     public static byte[] KMACXOF256(byte[] key, byte[] message, int outputBitLength, byte[] customization) {
-        // Concatenate the key with the input data, padding the key to 136 bytes
-        byte[] paddedKey = concat(concat(bytePad(encodeString(key),136), message), rightEncode(BigInteger.ZERO));
-        // Use the cSHAKE256 function with the specified custom string and "KMAC" as the function name
-        return cSHAKE256(paddedKey, outputBitLength, "KMAC".getBytes(), customization);
+        // The sponge absorbs the padded key, then the message in place, and appends right_encode(0)
+        return newKMACXOF256(key, customization).update(message).squeeze(outputBitLength);
     }
+
     /**
-     * A function to perform right encoding of bits.
-     * Encodes the bits of BigInteger X onto the right side of the byte array.
+     * The KMACXOF256 function over a message given in parts.
+     * The parts are absorbed in order as if they were concatenated, so a MAC over a header and
+     * a large body never copies the body.
      *
-     * @param num The BigInteger to be encoded
-     * @return A byte array with the encoded BigInteger
+     * @param key The key as byte array
+     * @param outputBitLength The desired bit length of the output
+     * @param customization A custom string as byte array
+     * @param messageParts The message byte arrays, in order
+     * @return A byte array representing the hash text
      */
-    private static byte[] rightEncode(BigInteger num) {
-        // Check if num is within the acceptable range.
-        if (num.compareTo(BigInteger.valueOf(2).pow(2040)) >= 0) {
-            throw new IllegalArgumentException("x should be less than 2^2040");
+    public static byte[] KMACXOF256Parts(byte[] key, int outputBitLength, byte[] customization,
+                                         byte[]... messageParts) {
+        KeccakSponge sponge = newKMACXOF256(key, customization);
+        for (byte[] part : messageParts) {
+            sponge.update(part);
         }
+        return sponge.squeeze(outputBitLength);
+    }
 
-        int byteCount = 1;
-        // Find the appropriate value of byteCount to represent num.
-        while (num.compareTo(new BigInteger(String.valueOf((int)Math.pow(2, (8 * byteCount))))) != -1) {
-            byteCount++;
+    /**
+     * The KMACXOF256 function over a message given as a sequence of buffers.
+     * The remaining bytes of every buffer are absorbed in order; the buffer positions are left unchanged.
+     *
+     * @param key The key as byte array
+     * @param outputBitLength The desired bit length of the output
+     * @param customization A custom string as byte array
+     * @param messageParts The message buffers, in order
+     * @return A byte array representing the hash text
+     */
+    public static byte[] KMACXOF256Buffers(byte[] key, int outputBitLength, byte[] customization,
+                                           ByteBuffer... messageParts) {
+        KeccakSponge sponge = newKMACXOF256(key, customization);
+        for (ByteBuffer part : messageParts) {
+            sponge.update(part.duplicate());
         }
-        // Get the byte representation of num.
-        byte[] numberBytes = num.toByteArray();
+        return sponge.squeeze(outputBitLength);
+    }
 
-        // If the first byte of numberBytes is 0 and there are more bytes, remove the leading zero.
-        if ((numberBytes[0] == 0) && (numberBytes.length > 1)) {
-            byte[] temp = new byte[numberBytes.length - 1];
-            System.arraycopy(numberBytes, 1, temp, 0, numberBytes.length - 1);
-            numberBytes = temp;
+    /**
+     * cSHAKE256 over many messages with the same function name and custom string.
+     * The outputs are written back to back, the i-th one at off + i * bitLength / 8.
+     * Continues from the cached prefix state and advances the messages in batches through
+     * KeccakProcessor.keccakBatch, which is much cheaper per message than calling cSHAKE256 in a
+     * loop on small inputs.
+     *
+     * @param messages The input byte arrays
+     * @param bitLength The desired bit length of every output
+     * @param functionName A byte array representing the function's name
+     * @param customStr A custom string as byte array
+     * @param out The output array
+     * @param off Offset of the first output byte
+     */
+    public static void hashMany(List<byte[]> messages, int bitLength, byte[] functionName, byte[] customStr,
+                                byte[] out, int off) {
+        KeccakSponge.hashEach(newCSHAKE256(functionName, customStr), messages, out, off, bitLength / 8);
+    }
+
+    /**
+     * KMACXOF256 over many messages with the same key and custom string.
+     * The outputs are written back to back, the i-th one at off + i * outputBitLength / 8.
+     * The key block is absorbed once for the whole batch, see KmacContext.
+     *
+     * @param key The key as byte array
+     * @param messages The input byte arrays
+     * @param outputBitLength The desired bit length of every output
+     * @param customization A custom string as byte array
+     * @param out The output array
+     * @param off Offset of the first output byte
+     */
+    public static void macMany(byte[] key, List<byte[]> messages, int outputBitLength, byte[] customization,
+                               byte[] out, int off) {
+        new KmacContext(key, customization).macMany(messages, outputBitLength, out, off);
+    }
+
+    /**
+     * The KMACXOF256 function over a message read from a channel until end of stream.
+     * The message is absorbed as it is read, so its length is not limited by the size of an array.
+     *
+     * @param key The key as byte array
+     * @param message The channel delivering the message
+     * @param outputBitLength The desired bit length of the output
+     * @param customization A custom string as byte array
+     * @return A byte array representing the hash text
+     * @throws IOException If reading from the channel fails
+     */
+    public static byte[] KMACXOF256(byte[] key, ReadableByteChannel message, int outputBitLength,
+                                    byte[] customization) throws IOException {
+        return newKMACXOF256(key, customization).update(message).squeeze(outputBitLength);
+    }
+
+    /**
+     * The KMACXOF256 function over the content of a file.
+     * A regular file is memory-mapped and absorbed in place, without reading it onto the heap.
+     * Anything else, such as a pipe or a device, is read as a stream.
+     *
+     * @param key The key as byte array
+     * @param file The file holding the message
+     * @param outputBitLength The desired bit length of the output
+     * @param customization A custom string as byte array
+     * @return A byte array representing the hash text
+     * @throws IOException If the file cannot be opened, mapped or read
+     */
+    public static byte[] KMACXOF256(byte[] key, Path file, int outputBitLength, byte[] customization)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            KeccakSponge sponge = newKMACXOF256(key, customization);
+            if (Files.isRegularFile(file)) {
+                sponge.updateMapped(channel);
+            } else {
+                sponge.update(channel);
+            }
+            return sponge.squeeze(outputBitLength);
         }
+    }
+
+    /**
+     * KMACXOF256 whose output is read lazily instead of returned as one array.
+     * Reading n bytes yields the same bytes as KMACXOF256(key, message, 8 * n, customization),
+     * but the length is a long and no more than the sponge state is held, so a keystream can
+     * be produced in step with the data it encrypts.
+     *
+     * @param key The key as byte array
+     * @param message The input byte array
+     * @param outputLength The number of output bytes the reader delivers
+     * @param customization A custom string as byte array
+     * @return A reader over the output
+     */
+    public static XofReader KMACXOF256Reader(byte[] key, byte[] message, long outputLength, byte[] customization) {
+        return new XofReader(newKMACXOF256(key, customization).update(message), outputLength);
+    }
+
+    /**
+     * Incremental counterpart of SHAKE256.
+     * Absorb with update() and read the digest with squeeze().
+     *
+     * @return An empty SHAKE256 sponge
+     */
+    public static KeccakSponge newSHAKE256() {
+        return new KeccakSponge(512, 24, (byte) 0x1F);
+    }
 
-        byte[] output = new byte[numberBytes.length + 1];
+    /**
+     * Incremental counterpart of cSHAKE256.
+     * The returned sponge has already absorbed the encoded function name and custom string.
+     * Absorb a common prefix and call copy() to hash several suffixes without re-absorbing it.
+     *
+     * @param functionName A byte array representing the function's name
+     * @param customStr A custom string as byte array
+     * @return A cSHAKE256 sponge ready to absorb the input
+     */
+    public static KeccakSponge newCSHAKE256(byte[] functionName, byte[] customStr) {
+        // If both function name and custom string are empty, fallback to SHAKE 256
+        if (functionName.length == 0 && customStr.length == 0) {
+            return newSHAKE256();
+        }
+        return new KeccakSponge(prefixState(functionName, customStr, 24));
+    }
 
-        for (int i = 0; i < numberBytes.length; i++) {
-            output[numberBytes.length - (i+1)] = numberBytes[i];
+    /**
+     * Returns the cSHAKE sponge state right after the prefix block for the given name and custom
+     * string, computing it on first use. The returned sponge is shared and must only be copied.
+     * At most PREFIX_CACHE_LIMIT states are kept; further pairs are computed on every call.
+     * The 24-round sponges keep the original cSHAKE256 encoding and padding so that KMACXOF256
+     * tags and cryptograms made by earlier versions still verify; the 12-round variants are
+     * framed per SP 800-185 and padded per FIPS 202.
+     *
+     * @param functionName A byte array representing the function's name
+     * @param customStr A custom string as byte array
+     * @param rounds Number of rounds of the permutation
+     * @return The shared prefix state
+     */
+    private static KeccakSponge prefixState(byte[] functionName, byte[] customStr, int rounds) {
+        PrefixKey key = new PrefixKey(functionName, customStr, rounds);
+        KeccakSponge prefix = PREFIX_STATES.get(key);
+        if (prefix == null) {
+            // Only the 24-round cSHAKE256 has existing outputs to stay compatible with.
+            boolean legacy = rounds == 24;
+            prefix = new KeccakSponge(512, rounds, (byte) 0x04, new byte[0], legacy)
+                    .update(legacy ? bytePad(136, functionName, customStr) : spBytePad(136, functionName, customStr));
+            if (PREFIX_STATES.size() < PREFIX_CACHE_LIMIT) {
+                PREFIX_STATES.putIfAbsent(key, prefix);
+            }
         }
-        // Set the first byte of the output as the value of byteCount.
-        output[0] =(byte) byteCount;
+        return prefix;
+    }
 
-        return output;
+    /**
+     * Incremental counterpart of KMACXOF256.
+     * The returned sponge has already absorbed the padded key and appends right_encode(0) when
+     * squeezing starts, so only the message has to be passed to update(). Like any sponge it can
+     * be copied after a shared message prefix; KmacContext does the same for the key block.
+     *
+     * @param key The key as byte array
+     * @param customization A custom string as byte array
+     * @return A KMACXOF256 sponge ready to absorb the message
+     */
+    public static KeccakSponge newKMACXOF256(byte[] key, byte[] customization) {
+        return new KeccakSponge(prefixState("KMAC".getBytes(), customization, 24), RIGHT_ENCODE_ZERO)
+                .update(bytePad(136, key));
     }
 
     /**
-     * Encodes the given BigInteger onto the left side of the byte array.
+     * The TurboSHAKE256 function with the default domain separation byte 0x1F.
+     * Same sponge as SHAKE256 but over the 12-round Keccak-p[1600] permutation.
+     * - https://www.rfc-editor.org/rfc/rfc9861
      *
-     * @param num The BigInteger to be encoded
-     * @return A byte array with the left-encoded BigInteger
+     * @param in The input byte array
+     * @param bitLen The desired bit length of the output
+     * @return A byte array representing the message digest
      */
-    private static byte[] leftEncode(BigInteger num) {
-        // Check if num is within the acceptable range.
-        if (num.compareTo(BigInteger.valueOf(2).pow(2040)) >= 0) {
-            throw new IllegalArgumentException("x should be less than 2^2040");
+    public static byte[] TurboSHAKE256(byte[] in, int bitLen) {
+        return TurboSHAKE256(in, bitLen, (byte) 0x1F);
+    }
+
+    /**
+     * The TurboSHAKE256 function.
+     * Produces a variable length message digest based on the 12-round Keccak-p[1600] permutation.
+     * - https://www.rfc-editor.org/rfc/rfc9861
+     *
+     * @param in The input byte array
+     * @param bitLen The desired bit length of the output
+     * @param domain The domain separation byte, in the range 0x01 to 0x7F
+     * @return A byte array representing the message digest
+     */
+    public static byte[] TurboSHAKE256(byte[] in, int bitLen, byte domain) {
+        return turboShake(in, bitLen, domain, 512);
+    }
+
+    /**
+     * The TurboSHAKE128 function.
+     * Same construction as TurboSHAKE256 with a 256-bit capacity, as used by KangarooTwelve.
+     * - https://www.rfc-editor.org/rfc/rfc9861
+     *
+     * @param in The input byte array
+     * @param bitLen The desired bit length of the output
+     * @param domain The domain separation byte, in the range 0x01 to 0x7F
+     * @return A byte array representing the message digest
+     */
+    public static byte[] TurboSHAKE128(byte[] in, int bitLen, byte domain) {
+        return turboShake(in, bitLen, domain, 256);
+    }
+
+    /**
+     * Pads the input with the domain separation byte and runs the 12-round sponge.
+     *
+     * @param in The input byte array
+     * @param bitLen The desired bit length of the output
+     * @param domain The domain separation byte, in the range 0x01 to 0x7F
+     * @param capacity The capacity in bits
+     * @return A byte array representing the message digest
+     */
+    private static byte[] turboShake(byte[] in, int bitLen, byte domain, int capacity) {
+        return newTurboShake(domain, capacity).update(in).squeeze(bitLen);
+    }
+
+    /**
+     * Creates an empty 12-round sponge with the given domain separation byte.
+     *
+     * @param domain The domain separation byte, in the range 0x01 to 0x7F
+     * @param capacity The capacity in bits
+     * @return An empty TurboSHAKE sponge
+     */
+    private static KeccakSponge newTurboShake(byte domain, int capacity) {
+        if (domain < 0x01) {
+            throw new IllegalArgumentException("Domain separation byte must be in the range 0x01 to 0x7F");
         }
+        return new KeccakSponge(capacity, 12, domain);
+    }
 
-        int n = 1;
-        // Find the appropriate value of n to represent num.
-        while (num.compareTo(new BigInteger(String.valueOf((int)Math.pow(2, (8*n))))) != -1) {
-            n++;
+    /**
+     * The reduced-round counterpart of cSHAKE256.
+     * Frames the input like cSHAKE256, with the standard SP 800-185 encoders rather than the
+     * legacy ones, and absorbs it with TurboSHAKE256 under the domain separation byte 0x04, so
+     * it never collides with plain TurboSHAKE256 (0x1F).
+     *
+     * @param in The input byte array
+     * @param bitLength The desired bit length of the output
+     * @param functionName A byte array representing the function's name
+     * @param customStr A custom string as byte array
+     * @return A byte array representing the message digest
+     */
+    public static byte[] TurboCSHAKE256(byte[] in, int bitLength, byte[] functionName, byte[] customStr) {
+        // If both function name and custom string are empty, fallback to TurboSHAKE256
+        if (functionName.length == 0 && customStr.length == 0) {
+            return TurboSHAKE256(in, bitLength);
         }
 
-        // Get the byte representation of num.
-        byte[] xBytes = num.toByteArray();
-        // If the first byte is 0 and there are more bytes, remove the leading zero.
-        if ((xBytes[0] == 0) && (xBytes.length > 1)) {
-            byte[] temp = new byte[xBytes.length - 1];
-            System.arraycopy(xBytes, 1, temp, 0, xBytes.length - 1);
-            xBytes = temp;
+        return new KeccakSponge(prefixState(functionName, customStr, 12))
+                .update(in)
+                .squeeze(bitLength);
+    }
+
+    /**
+     * The reduced-round counterpart of KMACXOF256, built on TurboCSHAKE256.
+     * Intended for bulk keystream generation where the 12-round security margin is acceptable.
+     *
+     * @param key The key as byte array
+     * @param message The input byte array
+     * @param outputBitLength The desired bit length of the output
+     * @param customization A custom string as byte array
+     * @return A byte array representing the hash text
+     */
+    public static byte[] TurboKMACXOF256(byte[] key, byte[] message, int outputBitLength, byte[] customization) {
+        // Framed per SP 800-185, including the standard right_encode(0) = {0, 1}
+        return new KeccakSponge(prefixState("KMAC".getBytes(), customization, 12), spRightEncode(0))
+                .update(spBytePad(136, key))
+                .update(message)
+                .squeeze(outputBitLength);
+    }
+    /**
+     * The ParallelHash256 function from NIST SP 800-185.
+     * The input is split into blocks of blockSize bytes, each block is hashed independently on
+     * the common ForkJoinPool and the chaining values are combined with cSHAKE256.
+     * - https://doi.org/10.6028/NIST.SP.800-185
+     *
+     * @param in The input byte array
+     * @param blockSize The block size B in bytes
+     * @param bitLength The desired bit length of the output
+     * @param customization A custom string as byte array
+     * @return A byte array representing the message digest
+     */
+    public static byte[] ParallelHash256(byte[] in, int blockSize, int bitLength, byte[] customization) {
+        return parallelHash(in, blockSize, bitLength, bitLength, customization);
+    }
+
+    /**
+     * The ParallelHashXOF256 function from NIST SP 800-185.
+     * Same as ParallelHash256 but the output length is not bound into the hash.
+     *
+     * @param in The input byte array
+     * @param blockSize The block size B in bytes
+     * @param bitLength The desired bit length of the output
+     * @param customization A custom string as byte array
+     * @return A byte array representing the message digest
+     */
+    public static byte[] ParallelHashXOF256(byte[] in, int blockSize, int bitLength, byte[] customization) {
+        return parallelHash(in, blockSize, bitLength, 0, customization);
+    }
+
+    /**
+     * Common implementation of ParallelHash256 and ParallelHashXOF256.
+     *
+     * @param in The input byte array
+     * @param blockSize The block size B in bytes
+     * @param bitLength The desired bit length of the output
+     * @param encodedLength The length bound into the hash, 0 for the XOF
+     * @param customization A custom string as byte array
+     * @return A byte array representing the message digest
+     */
+    private static byte[] parallelHash(byte[] in, int blockSize, int bitLength, long encodedLength,
+                                       byte[] customization) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be greater than 0");
         }
-        // Create the output byte array.
-        byte[] output = new byte[xBytes.length + 1];
-        for (int i = 0; i < xBytes.length; i++) {
-            output[xBytes.length - (i)] = xBytes[i];
+        int blocks = (int) (((long) in.length + blockSize - 1) / blockSize);
+
+        // z = left_encode(B) || CV_0 || ... || CV_(n-1) || right_encode(n) || right_encode(L)
+        byte[] encodedBlockSize = spLeftEncode(blockSize);
+        byte[] encodedBlocks = spRightEncode(blocks);
+        byte[] encodedOutput = spRightEncode(encodedLength);
+        int cvOffset = encodedBlockSize.length;
+        byte[] z = new byte[cvOffset + blocks * 64 + encodedBlocks.length + encodedOutput.length];
+        System.arraycopy(encodedBlockSize, 0, z, 0, encodedBlockSize.length);
+
+        // cSHAKE256(X_i, 512, "", "") is SHAKE256; every block writes its own slot of z.
+        IntStream.range(0, blocks).parallel().forEach(i -> {
+            int start = i * blockSize;
+            int end = (int) Math.min((long) start + blockSize, in.length);
+            newSHAKE256().update(in, start, end - start).squeeze(z, cvOffset + i * 64, 64);
+        });
+
+        int offset = cvOffset + blocks * 64;
+        System.arraycopy(encodedBlocks, 0, z, offset, encodedBlocks.length);
+        System.arraycopy(encodedOutput, 0, z, offset + encodedBlocks.length, encodedOutput.length);
+        // cSHAKE256(z, L, "ParallelHash", S) with the standard encoders and padding, unlike the
+        // legacy framing that cSHAKE256 keeps for KMACXOF256.
+        return new KeccakSponge(512, 24, (byte) 0x04)
+                .update(spBytePad(136, "ParallelHash".getBytes(), customization))
+                .update(z)
+                .squeeze(bitLength);
+    }
+
+    /**
+     * The KangarooTwelve (KT128) function.
+     * Tree hash over TurboSHAKE128: the input is cut into 8 KiB chunks, every chunk after the
+     * first is hashed independently into a chaining value on the common ForkJoinPool, and the
+     * chaining values are absorbed by the final node. Scales with the number of cores on large inputs.
+     * - https://www.rfc-editor.org/rfc/rfc9861
+     *
+     * @param in The input byte array
+     * @param customization A custom string as byte array
+     * @param bitLen The desired bit length of the output
+     * @return A byte array representing the message digest
+     */
+    public static byte[] KangarooTwelve(byte[] in, byte[] customization, int bitLen) {
+        return kangarooTwelve(in, customization, bitLen, 256, 32);
+    }
+
+    /**
+     * The KT256 function.
+     * KangarooTwelve over TurboSHAKE256 with 64-byte chaining values, matching the
+     * 256-bit security level of the other functions in this class.
+     * - https://www.rfc-editor.org/rfc/rfc9861
+     *
+     * @param in The input byte array
+     * @param customization A custom string as byte array
+     * @param bitLen The desired bit length of the output
+     * @return A byte array representing the message digest
+     */
+    public static byte[] KT256(byte[] in, byte[] customization, int bitLen) {
+        return kangarooTwelve(in, customization, bitLen, 512, 64);
+    }
+
+    /**
+     * The KT256 function over a message read from a channel until end of stream.
+     * The message is read K12_BATCH_CHUNKS chunks at a time and the leaves of every batch are
+     * hashed in parallel, so memory stays bounded whatever the length of the message.
+     *
+     * @param in The channel delivering the message
+     * @param customization A custom string as byte array
+     * @param bitLen The desired bit length of the output
+     * @return A byte array representing the message digest
+     * @throws IOException If reading from the channel fails
+     */
+    public static byte[] KT256(ReadableByteChannel in, byte[] customization, int bitLen) throws IOException {
+        return kangarooTwelve(in, customization, bitLen, 512, 64);
+    }
+
+    /**
+     * The KT256 function over the content of a file, without reading the whole file onto the heap.
+     *
+     * @param file The file holding the message
+     * @param customization A custom string as byte array
+     * @param bitLen The desired bit length of the output
+     * @return A byte array representing the message digest
+     * @throws IOException If the file cannot be opened or read
+     */
+    public static byte[] KT256(Path file, byte[] customization, int bitLen) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return KT256(channel, customization, bitLen);
         }
+    }
 
-        output[0] =(byte) n;
-        return output;
+    /**
+     * Common KangarooTwelve tree hashing for KT128 and KT256.
+     *
+     * @param in The input byte array
+     * @param customization A custom string as byte array
+     * @param bitLen The desired bit length of the output
+     * @param capacity The capacity in bits of the underlying TurboSHAKE
+     * @param cvLength Length of a chaining value in bytes
+     * @return A byte array representing the message digest
+     */
+    private static byte[] kangarooTwelve(byte[] in, byte[] customization, int bitLen, int capacity, int cvLength) {
+        // S = M || C || length_encode(|C|)
+        byte[] suffix = concat(customization, lengthEncode(customization.length));
+        long total = (long) in.length + suffix.length;
+        if (total <= K12_CHUNK_SIZE) {
+            return newTurboShake((byte) 0x07, capacity).update(in).update(suffix).squeeze(bitLen);
+        }
+
+        // Leaves are independent, each one squeezes its chaining value into its own slot.
+        int leaves = (int) ((total - 1) / K12_CHUNK_SIZE);
+        byte[] chainingValues = new byte[leaves * cvLength];
+        IntStream.rangeClosed(1, leaves).parallel().forEach(i -> {
+            KeccakSponge leaf = newTurboShake((byte) 0x0B, capacity);
+            absorbTreeChunk(leaf, in, suffix, i);
+            leaf.squeeze(chainingValues, (i - 1) * cvLength, cvLength);
+        });
+
+        // Final node: S_0 || 0x03 || 0^7 || CV_1 || ... || CV_n || length_encode(n) || 0xFF || 0xFF
+        KeccakSponge node = newTurboShake((byte) 0x06, capacity);
+        absorbTreeChunk(node, in, suffix, 0);
+        return node.update(new byte[] {0x03, 0, 0, 0, 0, 0, 0, 0})
+                .update(chainingValues)
+                .update(lengthEncode(leaves))
+                .update(new byte[] {(byte) 0xFF, (byte) 0xFF})
+                .squeeze(bitLen);
     }
 
     /**
-     * Encodes the provided byte array into another byte representation.
+     * Common KangarooTwelve tree hashing over a channel. The final node absorbs the chaining
+     * values batch by batch as they are computed, which gives the same result as absorbing
+     * them all at once.
      *
-     * @param byteArray The byte array to be encoded
-     * @return Encoded byte array
+     * @param in The channel delivering the message
+     * @param customization A custom string as byte array
+     * @param bitLen The desired bit length of the output
+     * @param capacity The capacity in bits of the underlying TurboSHAKE
+     * @param cvLength Length of a chaining value in bytes
+     * @return A byte array representing the message digest
+     * @throws IOException If reading from the channel fails
      */
-    private static byte[] encodeString(byte[] byteArray) {
-        if (byteArray == null || byteArray.length == 0) {
-            // If the input byte array is null or empty, encode it as zero.
-            return leftEncode(BigInteger.ZERO);
-        } else {
-            // Encode the length of the byte array in bits as a prefix.
-            BigInteger lengthInBits = BigInteger.valueOf(byteArray.length << 3);
-            byte[] lengthPrefix = leftEncode(lengthInBits);
+    private static byte[] kangarooTwelve(ReadableByteChannel in, byte[] customization, int bitLen, int capacity,
+                                         int cvLength) throws IOException {
+        TreeInput input = new TreeInput(in, concat(customization, lengthEncode(customization.length)));
+        byte[] first = new byte[K12_CHUNK_SIZE];
+        int firstLength = input.read(first);
+        byte[] batch = new byte[K12_BATCH_CHUNKS * K12_CHUNK_SIZE];
+        int batchLength = input.read(batch);
+        if (batchLength == 0) {
+            return newTurboShake((byte) 0x07, capacity).update(first, 0, firstLength).squeeze(bitLen);
+        }
 
-            // Concatenate the length prefix with the original byte array.
-            return concat(lengthPrefix, byteArray);
+        KeccakSponge node = newTurboShake((byte) 0x06, capacity)
+                .update(first)
+                .update(new byte[] {0x03, 0, 0, 0, 0, 0, 0, 0});
+        byte[] chainingValues = new byte[K12_BATCH_CHUNKS * cvLength];
+        long leaves = 0;
+        while (batchLength > 0) {
+            int length = batchLength;
+            int count = (length + K12_CHUNK_SIZE - 1) / K12_CHUNK_SIZE;
+            IntStream.range(0, count).parallel().forEach(i -> {
+                int start = i * K12_CHUNK_SIZE;
+                newTurboShake((byte) 0x0B, capacity)
+                        .update(batch, start, Math.min(K12_CHUNK_SIZE, length - start))
+                        .squeeze(chainingValues, i * cvLength, cvLength);
+            });
+            node.update(chainingValues, 0, count * cvLength);
+            leaves += count;
+            batchLength = input.read(batch);
         }
+        return node.update(lengthEncode(leaves))
+                .update(new byte[] {(byte) 0xFF, (byte) 0xFF})
+                .squeeze(bitLen);
     }
 
     /**
-     * Performs padding on the provided byte array.
+     * Absorbs the i-th 8 KiB chunk of the virtual string in || suffix without building it.
+     *
+     * @param sponge The sponge absorbing the chunk
+     * @param in The input byte array
+     * @param suffix The bytes logically appended to the input
+     * @param index The chunk index
+     */
+    private static void absorbTreeChunk(KeccakSponge sponge, byte[] in, byte[] suffix, int index) {
+        long start = (long) index * K12_CHUNK_SIZE;
+        long end = Math.min(start + K12_CHUNK_SIZE, (long) in.length + suffix.length);
+        if (start < in.length) {
+            sponge.update(in, (int) start, (int) (Math.min(end, in.length) - start));
+        }
+        if (end > in.length) {
+            int suffixStart = (int) Math.max(0, start - in.length);
+            sponge.update(suffix, suffixStart, (int) (end - in.length) - suffixStart);
+        }
+    }
+
+    /**
+     * left_encode as specified in NIST SP 800-185: the number of bytes of the value followed by
+     * its big-endian bytes. Unlike leftEncode, which KMACXOF256 keeps for compatibility with
+     * existing keys and cryptograms, this follows the standard byte order for multi-byte values.
+     *
+     * @param value The non-negative value to encode
+     * @return A byte array with the encoded value
+     */
+    private static byte[] spLeftEncode(long value) {
+        byte[] bytes = bigEndianBytes(value);
+        byte[] output = new byte[bytes.length + 1];
+        output[0] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, output, 1, bytes.length);
+        return output;
+    }
+
+    /**
+     * right_encode as specified in NIST SP 800-185: the big-endian bytes of the value followed
+     * by the number of those bytes.
+     *
+     * @param value The non-negative value to encode
+     * @return A byte array with the encoded value
+     */
+    private static byte[] spRightEncode(long value) {
+        byte[] bytes = bigEndianBytes(value);
+        byte[] output = Arrays.copyOf(bytes, bytes.length + 1);
+        output[bytes.length] = (byte) bytes.length;
+        return output;
+    }
+
+    /**
+     * bytepad(encode_string(s_1) || ... || encode_string(s_n), value) as specified in NIST
+     * SP 800-185, with every length written by spLeftEncode.
      *
-     * @param arr Byte array to be padded
      * @param value Width of the padding
-     * @return Padded byte array
+     * @param strings The byte arrays to be encoded, in order
+     * @return Padded byte array, a multiple of value bytes long
      */
-    private static byte[] bytePad(byte[] arr, int value) {
-        // SecondArray must be greater than 0
+    private static byte[] spBytePad(int value, byte[]... strings) {
         if (value <= 0) {
             throw new IllegalArgumentException("Value must be greater than 0");
         }
+        byte[] result = spLeftEncode(value);
+        for (byte[] string : strings) {
+            result = concat(result, concat(spLeftEncode((long) string.length << 3), string));
+        }
+        // Round up to a multiple of value, the tail is zero
+        return Arrays.copyOf(result, value * ((result.length + value - 1) / value));
+    }
 
-        // Convert value to BigInteger and encode it into a byte array
-        byte[] encoded = leftEncode(BigInteger.valueOf(value));
-        // Calculate the length of the resulting byte array result
-        byte[] result = new byte[value * ((encoded.length + arr.length + value - 1) / value)];
-
-        // Concatenate encoded and arr into result
-        System.arraycopy(encoded, 0, result, 0, encoded.length);
-        System.arraycopy(arr,0,result,encoded.length, arr.length);
+    /**
+     * Converts a value to its minimal big-endian byte representation, at least one byte long.
+     *
+     * @param value The non-negative value to convert
+     * @return The big-endian bytes of the value
+     */
+    private static byte[] bigEndianBytes(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative");
+        }
+        int byteCount = 1;
+        while (byteCount < 8 && (value >>> (8 * byteCount)) != 0) {
+            byteCount++;
+        }
+        byte[] bytes = new byte[byteCount];
+        for (int i = 0; i < byteCount; i++) {
+            bytes[i] = (byte) (value >>> (8 * (byteCount - 1 - i)));
+        }
+        return bytes;
+    }
 
-        for (int i = encoded.length + arr.length; i < result.length; i++) {
-            result[i] = (byte) 0;
+    /**
+     * Encodes a length as used by KangarooTwelve: the big-endian bytes of the value without
+     * leading zeros, followed by the number of those bytes.
+     *
+     * @param value The non-negative value to encode
+     * @return A byte array with the encoded value
+     */
+    private static byte[] lengthEncode(long value) {
+        int byteCount = 0;
+        while (byteCount < 8 && (value >>> (8 * byteCount)) != 0) {
+            byteCount++;
         }
+        byte[] output = new byte[byteCount + 1];
+        for (int i = 0; i < byteCount; i++) {
+            output[i] = (byte) (value >>> (8 * (byteCount - 1 - i)));
+        }
+        output[byteCount] = (byte) byteCount;
+        return output;
+    }
 
-        return result;
+    /**
+     * Writes the encoding of a value as used by KMACXOF256 and cSHAKE256 in this class: the
+     * number of bytes of the value followed by its little-endian bytes. Multi-byte values differ
+     * from the big-endian left_encode of NIST SP 800-185; the layout is kept so that existing
+     * keys and cryptograms stay valid. Writes into the caller's buffer without allocating.
+     *
+     * @param value The non-negative value to encode
+     * @param out The output array
+     * @param off Offset of the first byte to write
+     * @return The number of bytes written
+     */
+    private static int leftEncode(long value, byte[] out, int off) {
+        int byteCount = leftEncodedLength(value) - 1;
+        out[off] = (byte) byteCount;
+        for (int i = 0; i < byteCount; i++) {
+            out[off + 1 + i] = (byte) (value >>> (8 * i));
+        }
+        return byteCount + 1;
     }
+
     /**
-     * Implements the sponge construction, a fundamental component of the Keccak algorithm.
-     * The sponge function absorbs input data into the state, and then it's squeezed out.
-     * - https://github.com/NWc0de/KeccakUtils/blob/master/src/crypto/keccak/KCrypt.java
+     * Returns the length of the encoding written by leftEncode.
      *
-     * @param in The input bytes
-     * @param bitLen The desired bit length of the output
-     * @param capacity The capacity in bits which remains untouched by the sponge function
-     * @return Output bytes after applying the sponge function
-     */
-    private static byte[] sponge(byte[] in, int bitLen, int capacity) {
-        int rate = 1600 - capacity;
-        // Pad the input to a multiple of the rate if needed.
-        byte[] padded = in.length % (rate / 8) == 0 ? in : padTenOne(rate, in);
-        // Convert the padded byte array into a 2D array of states.
-        long[][] states = byteArrayToStates(padded, capacity);
-        // Initialize the state to be used for Keccak processing.
-        long[] stcml = new long[25];
-        // Process each state in the sponge construction.
-        for (long[] st : states) {
-            stcml = KeccakProcessor.keccak(KeccakProcessor.xorStates(stcml, st), 1600, 24);
-        }
-        // Initialize the output long array.
-        long[] out = {};
-        int offset = 0;
-        do {
-            // Increase the size of the output long array.
-            out = Arrays.copyOf(out, offset + rate / 64);
-            // Copy the state into the output array.
-            System.arraycopy(stcml, 0, out, offset, rate / 64);
-            offset += rate / 64;
-            // Apply Keccak permutation to the state.
-            stcml = KeccakProcessor.keccak(stcml, 1600, 24);
-        } while (out.length * 64 < bitLen);
-        // Convert the output long array to a byte array of the specified bit length.
-        return stateToByteArray(out, bitLen);
-    }
-    /**
-     * Implements the pad10*1 padding scheme.
-     * This is used in Keccak to ensure that the input data is a multiple of the rate.
-     * The name "pad10*1" comes from the pattern of the padding: it always starts with a '1' bit,
-     * is followed by a number of '0' bits, and ends with a '1' bit.
-     * - https://github.com/NWc0de/KeccakUtils/blob/master/src/crypto/keccak/KCrypt.java
-     *
-     * @param rate The rate in bits
-     * @param in The input bytes that need padding
-     * @return The input bytes with the necessary padding applied
-     */
-    private static byte[] padTenOne(int rate, byte[] in) {
-        // Calculate the number of bytes needed to pad the input to a multiple of the rate.
-        int bytesToPad = (rate / 8) - in.length % (rate / 8);
-        // Create a new byte array to store the padded result.
-        byte[] padded = new byte[in.length + bytesToPad];
-
-        for (int i = 0; i < in.length + bytesToPad; i++) {
-            if (i < in.length) {
-                // Copy the original bytes from the input to the padded array.
-                padded[i] = in[i];
-            } else if (i == in.length + bytesToPad - 1) {
-                // Add the '10' padding, followed by '1'.
-                padded[i] = (byte) 0x80; // '10' padding (binary: 10000000)
-            } else {
-                // Add zero padding.
-                padded[i] = 0;
-            }
+     * @param value The non-negative value to encode
+     * @return The encoded length in bytes
+     */
+    private static int leftEncodedLength(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative");
+        }
+        int byteCount = 1;
+        while (byteCount < 8 && (value >>> (8 * byteCount)) != 0) {
+            byteCount++;
         }
+        return byteCount + 1;
+    }
+
+    /**
+     * Writes encode_string of the given bytes: leftEncode of the bit length followed by the bytes.
+     *
+     * @param byteArray The byte array to be encoded
+     * @param out The output array
+     * @param off Offset of the first byte to write
+     * @return The number of bytes written
+     */
+    private static int encodeString(byte[] byteArray, byte[] out, int off) {
+        // The bit length of an array always fits in a long, no BigInteger needed.
+        int prefixLength = leftEncode((long) byteArray.length << 3, out, off);
+        System.arraycopy(byteArray, 0, out, off + prefixLength, byteArray.length);
+        return prefixLength + byteArray.length;
+    }
 
-        return padded;
+    /**
+     * Builds bytepad(encode_string(s_1) || ... || encode_string(s_n), value) in a single array.
+     *
+     * @param value Width of the padding
+     * @param strings The byte arrays to be encoded, in order
+     * @return Padded byte array, a multiple of value bytes long
+     */
+    private static byte[] bytePad(int value, byte[]... strings) {
+        // Value must be greater than 0
+        if (value <= 0) {
+            throw new IllegalArgumentException("Value must be greater than 0");
+        }
+        long length = leftEncodedLength(value);
+        for (byte[] string : strings) {
+            length += leftEncodedLength((long) string.length << 3) + string.length;
+        }
+        // Round up to a multiple of value, the tail is already zero
+        byte[] result = new byte[Math.toIntExact(value * ((length + value - 1) / value))];
+        int offset = leftEncode(value, result, 0);
+        for (byte[] string : strings) {
+            offset += encodeString(string, result, offset);
+        }
+        return result;
     }
+
     /**
      * Calculates the XOR of two given byte arrays.
      *
@@ -273,14 +852,52 @@ public class CryptoUtils {
     public static byte[] xorBytes(byte[] firstArray, byte[] secondArray) {
         // Create a new byte array to store the XOR result.
         byte[] out = new byte[firstArray.length];
-        // Iterate through the elements of the input arrays.
-        for (int i = 0; i < firstArray.length; i++) {
-            // Perform a bitwise XOR operation between corresponding bytes of the two arrays.
-            out[i] = (byte) (firstArray[i] ^ secondArray[i]);
-        }
+        xorBytes(firstArray, 0, secondArray, 0, out, 0, firstArray.length);
         return out;
     }
 
+    /**
+     * XORs two byte ranges into an output range, 8 bytes at a time.
+     * The output may be the same range as either input.
+     *
+     * @param firstArray First byte array
+     * @param firstOff Offset into the first array
+     * @param secondArray Second byte array
+     * @param secondOff Offset into the second array
+     * @param out Output byte array
+     * @param outOff Offset into the output array
+     * @param len Number of bytes to XOR
+     */
+    public static void xorBytes(byte[] firstArray, int firstOff, byte[] secondArray, int secondOff,
+                                byte[] out, int outOff, int len) {
+        Objects.checkFromIndexSize(firstOff, len, firstArray.length);
+        Objects.checkFromIndexSize(secondOff, len, secondArray.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        int i = 0;
+        // Whole little-endian words through long views, the byte order does not matter for XOR.
+        for (; i <= len - 8; i += 8) {
+            long v = (long) LONG_VIEW.get(firstArray, firstOff + i) ^ (long) LONG_VIEW.get(secondArray, secondOff + i);
+            LONG_VIEW.set(out, outOff + i, v);
+        }
+        // Scalar tail
+        for (; i < len; i++) {
+            out[outOff + i] = (byte) (firstArray[firstOff + i] ^ secondArray[secondOff + i]);
+        }
+    }
+
+    /**
+     * XORs a byte range into another array in place: target[off + i] ^= source[sourceOff + i].
+     *
+     * @param target Byte array that receives the result
+     * @param off Offset into the target array
+     * @param source Byte array XORed into the target
+     * @param sourceOff Offset into the source array
+     * @param len Number of bytes to XOR
+     */
+    public static void xorInPlace(byte[] target, int off, byte[] source, int sourceOff, int len) {
+        xorBytes(target, off, source, sourceOff, target, off, len);
+    }
+
     /**
      * Concatenates two given byte arrays.
      *
@@ -314,76 +931,68 @@ public class CryptoUtils {
     }
 
     /**
-     * Converts the provided state into a byte array.
-     *
-     * @param state The state to be converted
-     * @param bitLen Desired bit length of the output
-     * @return Byte array representation of the state
+     * The KangarooTwelve input M || C || length_encode(|C|) read from a channel, so that it can
+     * be cut into chunks without knowing the length of M in advance.
      */
-    private static byte[] stateToByteArray(long[] state, int bitLen) {
-        // Check if the state is long enough to produce the desired bit length.
-        if (state.length * 64 < bitLen) {
-            throw new IllegalArgumentException("State is of insufficient length to produced desired bit length.");
+    private static final class TreeInput {
+        private final ReadableByteChannel channel;
+        private final byte[] suffix;
+        // Number of suffix bytes already delivered
+        private int suffixOffset;
+        private boolean endOfChannel;
+
+        TreeInput(ReadableByteChannel channel, byte[] suffix) {
+            this.channel = channel;
+            this.suffix = suffix;
         }
-        // Calculate the size of the output byte array based on the bit length.
-        byte[] out = new byte[bitLen / 8];
-        int wrdInd = 0; // Initialize the word index.
-        while (wrdInd * 64 < bitLen) {
-            long word = state[wrdInd++]; // Get the next word from the state.
-            int fill = wrdInd * 64 > bitLen ? (bitLen - (wrdInd - 1) * 64) / 8 : 8;
-            // Extract individual bytes from the word and place them in the output array.
-            for (int b = 0; b < fill; b++) {
-                byte ubt = (byte) (word>>>(8 * b) & 0xFF); // Extract a byte from the word.
-                out[(wrdInd - 1) * 8 + b] = ubt; // Place the byte in the output array.
+
+        /**
+         * Fills the array with the next bytes of the input.
+         *
+         * @param out The array to fill
+         * @return The number of bytes read, less than out.length only at the end of the input
+         * @throws IOException If reading from the channel fails
+         */
+        int read(byte[] out) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(out);
+            while (!endOfChannel && buffer.hasRemaining()) {
+                endOfChannel = channel.read(buffer) == -1;
             }
+            int n = Math.min(buffer.remaining(), suffix.length - suffixOffset);
+            buffer.put(suffix, suffixOffset, n);
+            suffixOffset += n;
+            return buffer.position();
         }
-
-        return out;
     }
+
     /**
-     * Converts a byte array into an array of states. Each state is represented as an array of longs.
-     *
-     * @param in Byte array to be converted
-     * @param cap Capacity which determines the number of bits that are unaffected by the transformation
-     * @return An array of states derived from the input byte array
+     * Key of the prefix state cache, compares the function name and custom string by content.
      */
-    private static long[][] byteArrayToStates(byte[] in, int cap) {
-
-        long[][] states = new long[(in.length * 8)/(1600 - cap)][25];
-        int offset = 0;
-        for (int i = 0; i < states.length; i++) {
-            long[] state = new long[25];
-            for (int j = 0; j < (1600 - cap) / 64; j++) {
-                // Convert the next 8 bytes from the input array into a long word.
-                long word = bytesToWord(offset, in);
-                state[j] = word; // Assign the word to the state array.
-                offset += 8; // Move the offset to the next 8 bytes.
-            }
+    private static final class PrefixKey {
+        private final byte[] functionName;
+        private final byte[] customStr;
+        private final int rounds;
 
-            states[i] = state; // Assign the state array to the states 2D array.
+        PrefixKey(byte[] functionName, byte[] customStr, int rounds) {
+            this.functionName = functionName.clone();
+            this.customStr = customStr.clone();
+            this.rounds = rounds;
         }
-        return states;
-    }
 
-    /**
-     * Converts the provided byte range into a 64-bit word.
-     *
-     * @param offset The starting position in the byte array
-     * @param in The byte array
-     * @return 64-bit word
-     */
-    private static long bytesToWord(int offset, byte[] in) {
-        // Check if the byte range is reachable within the input array.
-        if (in.length < offset + 8) {
-            throw new IllegalArgumentException("index out of range.");
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PrefixKey)) {
+                return false;
+            }
+            PrefixKey other = (PrefixKey) o;
+            return rounds == other.rounds
+                    && Arrays.equals(functionName, other.functionName)
+                    && Arrays.equals(customStr, other.customStr);
         }
 
-        long word = 0L;
-        for (int i = 0; i < 8; i++) {
-            // Extract each byte from the input array, cast it to a long, and shift it to its position.
-            // The "& 0xff" mask ensures that the byte is treated as an unsigned byte.
-            word += (((long)in[offset + i]) & 0xff)<<(8*i);
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Arrays.hashCode(functionName) + Arrays.hashCode(customStr)) + rounds;
         }
-        return word;
     }
 }
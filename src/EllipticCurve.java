@@ -1,20 +1,53 @@
 import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class EllipticCurve {
-    private static final BigInteger p = BigInteger.valueOf(2).pow(448)
+    static final BigInteger p = BigInteger.valueOf(2).pow(448)
             .subtract(BigInteger.valueOf(2).pow(224)).subtract(BigInteger.ONE);
     public static final BigInteger r = BigInteger.valueOf(2).pow(446)
             .subtract(new BigInteger("13818066809895115352007386748515426880336692474882178609894547503885"));
-    private static final BigInteger d = BigInteger.valueOf(-39081); // Coefficient for the curve equation
-    private static final BigInteger one = BigInteger.ONE;
+    static final BigInteger d = BigInteger.valueOf(-39081); // Coefficient for the curve equation
     private static final BigInteger xG = new BigInteger("8");
     private static final BigInteger yG = new BigInteger("56340020092908815261360962937864138541010268211725856" +
             "6404750214022059686929583319585040850282322731241505930835997382613319689400286258");
+    // Default window width of the wNAF recoding used by exponentiation
+    private static final int DEFAULT_WINDOW = 5;
+    // Maximum number of public keys tracked by the comb table cache
+    private static final int PUBLIC_KEY_CACHE_SIZE = 64;
+    // Comb tables of recently used public keys keyed by (x, y), least recently used first.
+    // A null table marks a key seen only once, the table is built when it is used again.
+    private static final Map<List<BigInteger>, CombTable> PUBLIC_KEY_TABLES =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<BigInteger>, CombTable> eldest) {
+                    return size() > PUBLIC_KEY_CACHE_SIZE;
+                }
+            };
 
     public static EllipticCurvePoint getG() {
         return new EllipticCurvePoint(xG, yG);
     }
 
+    /**
+     * Holds the comb table of G, built on first use by the class loader, once per JVM.
+     */
+    private static class GeneratorTable {
+        private static final CombTable TABLE = new CombTable(getG());
+    }
+
+    /**
+     * Computes s * G for the fixed generator with its precomputed comb table.
+     * About 6x fewer point operations than exponentiation(getG(), s).
+     *
+     * @param s the scalar
+     * @return the point s * G, the neutral element (0, 1) when s = 0 (mod r)
+     */
+    public static EllipticCurvePoint multiplyBase(BigInteger s) {
+        return GeneratorTable.TABLE.multiply(s);
+    }
+
     /**
      * Compute a square root of v mod p with a specified least-significant bit
      * if such a root exists.
@@ -38,29 +71,150 @@ public class EllipticCurve {
         return (r.multiply(r).subtract(v).mod(p).signum() == 0) ? r : null;
     }
 
+    /**
+     * Computes k * V for a recipient public key, caching a comb table per key.
+     * The first multiplication with a key uses exponentiation; from the second one on, the key's
+     * CombTable is built and kept in a bounded LRU cache, so encrypting repeatedly to the same
+     * recipients runs at fixed-base speed. Same result as exponentiation(V, k) for k >= 2.
+     *
+     * @param V the public key, a point of order r
+     * @param k the scalar, 0 <= k < r
+     * @return the point k * V
+     */
+    public static EllipticCurvePoint multiplyPublicKey(EllipticCurvePoint V, BigInteger k) {
+        List<BigInteger> key = List.of(V.getX(), V.getY());
+        CombTable table;
+        boolean seen;
+        synchronized (PUBLIC_KEY_TABLES) {
+            seen = PUBLIC_KEY_TABLES.containsKey(key);
+            // get() also moves the key to the most recently used position.
+            table = PUBLIC_KEY_TABLES.get(key);
+            if (!seen) {
+                PUBLIC_KEY_TABLES.put(key, null);
+            }
+        }
+        if (table == null) {
+            if (!seen) {
+                return exponentiation(V, k);
+            }
+            table = new CombTable(V);
+            synchronized (PUBLIC_KEY_TABLES) {
+                PUBLIC_KEY_TABLES.put(key, table);
+            }
+        }
+        return table.multiply(k);
+    }
+
+    /**
+     * Computes s * G for an arbitrary base point with a width-5 NAF.
+     * Starts from G and scans from bit bitLength - 2 like plain double-and-add,
+     * so s = 0 and s = 1 both return G.
+     *
+     * @param G the base point
+     * @param s the non-negative scalar
+     * @return the point s * G
+     */
     public static EllipticCurvePoint exponentiation(EllipticCurvePoint G, BigInteger s) {
-        EllipticCurvePoint P = G;
-        for (int i = s.bitLength() - 2; i >= 0; i--) {
-            P = add(P, P);
-            if (s.testBit(i)) {
-                P = add(P, G);
+        return exponentiation(G, s, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Computes s * G for an arbitrary base point with a width-w NAF.
+     * The scalar is recoded into signed odd digits below 2^(w-1) with at least w - 1 zeros
+     * between two non-zero digits, so a 446-bit scalar needs about 446 / (w + 1) additions
+     * instead of about 223. The per-call table holds G, 3G, ..., (2^(w-1) - 1)G and their
+     * negations. The intermediate points are kept in extended coordinates over
+     * GoldilocksField, so the loop allocates nothing and the result costs a single inversion.
+     *
+     * @param G the base point
+     * @param s the non-negative scalar
+     * @param w the window width, 2 to 10; larger widths trade table size for fewer additions
+     * @return the point s * G, or G when s is 0 or 1
+     */
+    public static EllipticCurvePoint exponentiation(EllipticCurvePoint G, BigInteger s, int w) {
+        if (w < 2 || w > 10) {
+            throw new IllegalArgumentException("Window width must be between 2 and 10");
+        }
+        if (s.signum() < 0) {
+            throw new IllegalArgumentException("Scalar must not be negative");
+        }
+        if (s.bitLength() < 2) {
+            return G;
+        }
+
+        // Odd multiples (2i + 1) * G and their negations
+        ExtendedPoint base = ExtendedPoint.fromAffine(G);
+        ExtendedPoint twiceBase = base.copy();
+        twiceBase.twice();
+        ExtendedPoint[] odd = new ExtendedPoint[1 << (w - 2)];
+        ExtendedPoint[] negatedOdd = new ExtendedPoint[odd.length];
+        odd[0] = base;
+        for (int i = 1; i < odd.length; i++) {
+            odd[i] = odd[i - 1].copy();
+            odd[i].add(twiceBase);
+        }
+        for (int i = 0; i < odd.length; i++) {
+            negatedOdd[i] = odd[i].copy();
+            negatedOdd[i].negate();
+        }
+
+        int[] naf = wNaf(s, w);
+        int top = naf.length - 1;
+        while (naf[top] == 0) {
+            top--;
+        }
+        // The leading digit is always positive.
+        ExtendedPoint P = odd[naf[top] >> 1].copy();
+        for (int i = top - 1; i >= 0; i--) {
+            P.twice();
+            if (naf[i] > 0) {
+                P.add(odd[naf[i] >> 1]);
+            } else if (naf[i] < 0) {
+                P.add(negatedOdd[-naf[i] >> 1]);
             }
         }
-        return P;
+        return P.toAffine();
     }
 
-    public static EllipticCurvePoint add(EllipticCurvePoint p1, EllipticCurvePoint p2) {
-        BigInteger xDenominator = one.add(d.multiply(p1.getX()).multiply(p2.getX()).
-                multiply(p1.getY()).multiply(p2.getY()));
-        BigInteger xNumerator = (((p1.getX().multiply(p2.getY())).add(p1.getY().
-                multiply(p2.getX()))));
-        BigInteger yDenominator = one.subtract(d.multiply(p1.getX().multiply(p2.getX()).
-                multiply(p1.getY()).multiply(p2.getY())));
-        BigInteger yNumerator = (((p1.getY().multiply(p2.getY())).subtract(p1.getX().
-                multiply(p2.getX()))));
+    /**
+     * Recodes a positive scalar into its width-w non-adjacent form, least significant digit first.
+     * Every non-zero digit is odd and below 2^(w-1) in absolute value.
+     *
+     * @param s the positive scalar
+     * @param w the window width
+     * @return the digits, s = sum of digit[i] * 2^i
+     */
+    private static int[] wNaf(BigInteger s, int w) {
+        int[] naf = new int[s.bitLength() + 1];
+        BigInteger window = BigInteger.ONE.shiftLeft(w);
+        BigInteger k = s;
+        for (int i = 0; k.signum() > 0; i++) {
+            if (k.testBit(0)) {
+                int digit = k.mod(window).intValue();
+                if (digit >= 1 << (w - 1)) {
+                    digit -= 1 << w;
+                }
+                naf[i] = digit;
+                k = k.subtract(BigInteger.valueOf(digit));
+            }
+            k = k.shiftRight(1);
+        }
+        return naf;
+    }
 
-        return new EllipticCurvePoint(xNumerator.multiply(xDenominator.modInverse(p)).mod(p),
-                yNumerator.multiply(yDenominator.modInverse(p)).mod(p));
+    /**
+     * Adds two affine points with the unified Edwards addition law.
+     * The sum is computed in extended coordinates over GoldilocksField, so it costs one
+     * field inversion instead of two.
+     *
+     * @param p1 the first point
+     * @param p2 the second point
+     * @return the point p1 + p2
+     */
+    public static EllipticCurvePoint add(EllipticCurvePoint p1, EllipticCurvePoint p2) {
+        ExtendedPoint sum = ExtendedPoint.fromAffine(p1);
+        sum.addAffine(ExtendedPoint.fromAffine(p2));
+        return sum.toAffine();
     }
 
 }
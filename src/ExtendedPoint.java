@@ -0,0 +1,224 @@
+import java.math.BigInteger;
+
+/**
+ * A point of the Edwards curve x^2 + y^2 = 1 + d*x^2*y^2 in extended coordinates (X:Y:Z:T),
+ * with x = X/Z, y = Y/Z and x*y = T/Z.
+ * Coordinates are GoldilocksField elements and the point is updated in place, so additions and
+ * doublings neither invert nor allocate once the point's scratch space exists; a single inversion
+ * converts the result back to an affine EllipticCurvePoint, whose BigInteger coordinates are the
+ * only allocations of toAffine. The formulas are complete for a = 1 and non-square d, so they also
+ * handle doubling through add and the neutral element (0, 1).
+ * This implementation was inspired by:
+ * - https://eprint.iacr.org/2008/522 (Twisted Edwards Curves Revisited)
+ * - https://hyperelliptic.org/EFD/g1p/auto-twisted-extended-1.html
+ */
+public class ExtendedPoint {
+    // -d = 39081, the negative curve coefficient is applied as a small positive multiplier
+    private static final long MINUS_D = EllipticCurve.d.negate().longValueExact();
+
+    private final long[] X = new long[GoldilocksField.LIMBS];
+    private final long[] Y = new long[GoldilocksField.LIMBS];
+    private final long[] Z = new long[GoldilocksField.LIMBS];
+    private final long[] T = new long[GoldilocksField.LIMBS];
+    // Temporaries of the formulas, allocated the first time this point is modified
+    private long[][] scratch;
+
+    private ExtendedPoint() {
+    }
+
+    /**
+     * Converts an affine point to extended coordinates with Z = 1.
+     *
+     * @param point the affine point
+     * @return the same point in extended coordinates
+     */
+    public static ExtendedPoint fromAffine(EllipticCurvePoint point) {
+        ExtendedPoint P = new ExtendedPoint();
+        System.arraycopy(GoldilocksField.fromBigInteger(point.getX()), 0, P.X, 0, GoldilocksField.LIMBS);
+        System.arraycopy(GoldilocksField.fromBigInteger(point.getY()), 0, P.Y, 0, GoldilocksField.LIMBS);
+        GoldilocksField.set(P.Z, 1);
+        GoldilocksField.mul(P.T, P.X, P.Y);
+        return P;
+    }
+
+    /**
+     * Returns the neutral element (0, 1), i.e. (0:1:1:0).
+     *
+     * @return a new neutral point
+     */
+    public static ExtendedPoint neutral() {
+        ExtendedPoint P = new ExtendedPoint();
+        GoldilocksField.set(P.Y, 1);
+        GoldilocksField.set(P.Z, 1);
+        return P;
+    }
+
+    /**
+     * Returns a copy of this point.
+     *
+     * @return a new point equal to this one
+     */
+    public ExtendedPoint copy() {
+        ExtendedPoint P = new ExtendedPoint();
+        P.set(this);
+        return P;
+    }
+
+    /**
+     * Sets this point to another one.
+     *
+     * @param other the point to copy
+     */
+    public void set(ExtendedPoint other) {
+        System.arraycopy(other.X, 0, X, 0, GoldilocksField.LIMBS);
+        System.arraycopy(other.Y, 0, Y, 0, GoldilocksField.LIMBS);
+        System.arraycopy(other.Z, 0, Z, 0, GoldilocksField.LIMBS);
+        System.arraycopy(other.T, 0, T, 0, GoldilocksField.LIMBS);
+    }
+
+    /**
+     * Negates this point in place, -(x, y) = (-x, y).
+     */
+    public void negate() {
+        GoldilocksField.negate(X, X);
+        GoldilocksField.negate(T, T);
+    }
+
+    /**
+     * Converts back to affine coordinates with one inversion of Z.
+     *
+     * @return the affine point
+     */
+    public EllipticCurvePoint toAffine() {
+        // invert uses the first INVERT_SCRATCH temporaries, the two after them hold the results.
+        long[][] s = scratch();
+        long[] zInverse = s[GoldilocksField.INVERT_SCRATCH];
+        long[] coordinate = s[GoldilocksField.INVERT_SCRATCH + 1];
+        GoldilocksField.invert(zInverse, Z, s);
+        GoldilocksField.mul(coordinate, X, zInverse);
+        BigInteger x = GoldilocksField.toBigInteger(coordinate);
+        GoldilocksField.mul(coordinate, Y, zInverse);
+        return new EllipticCurvePoint(x, GoldilocksField.toBigInteger(coordinate));
+    }
+
+    /**
+     * Scales every point to Z = 1 with a single field inversion (Montgomery's trick), so that
+     * they can be used with addAffine. Allocates the points.length + 1 prefix products and the
+     * temporaries of the inversion, once per call.
+     *
+     * @param points the points to normalize in place
+     */
+    public static void normalizeAll(ExtendedPoint[] points) {
+        // prefix[i] = Z_0 * ... * Z_(i-1)
+        long[][] prefix = new long[points.length + 1][GoldilocksField.LIMBS];
+        GoldilocksField.set(prefix[0], 1);
+        for (int i = 0; i < points.length; i++) {
+            GoldilocksField.mul(prefix[i + 1], prefix[i], points[i].Z);
+        }
+        long[][] s = new long[GoldilocksField.INVERT_SCRATCH + 2][GoldilocksField.LIMBS];
+        long[] inverse = s[GoldilocksField.INVERT_SCRATCH];
+        long[] zInverse = s[GoldilocksField.INVERT_SCRATCH + 1];
+        GoldilocksField.invert(inverse, prefix[points.length], s);
+        for (int i = points.length - 1; i >= 0; i--) {
+            // inverse = 1 / (Z_0 * ... * Z_i), so 1 / Z_i = inverse * prefix[i]
+            ExtendedPoint P = points[i];
+            GoldilocksField.mul(zInverse, inverse, prefix[i]);
+            GoldilocksField.mul(inverse, inverse, P.Z);
+            GoldilocksField.mul(P.X, P.X, zInverse);
+            GoldilocksField.mul(P.Y, P.Y, zInverse);
+            GoldilocksField.mul(P.T, P.T, zInverse);
+            GoldilocksField.set(P.Z, 1);
+        }
+    }
+
+    /**
+     * Unified addition (add-2008-hwcd with a = 1), this = this + other.
+     * A = X1*X2, B = Y1*Y2, C = d*T1*T2, D = Z1*Z2, E = (X1+Y1)*(X2+Y2) - A - B,
+     * F = D - C, G = D + C, H = B - A, X3 = E*F, Y3 = G*H, T3 = E*H, Z3 = F*G.
+     *
+     * @param other the point to add, may be this point
+     */
+    public void add(ExtendedPoint other) {
+        add(other, false);
+    }
+
+    /**
+     * Mixed addition of a point with Z = 1, such as one returned by fromAffine,
+     * which saves the multiplication Z1*Z2.
+     *
+     * @param other the point to add, with Z = 1
+     */
+    public void addAffine(ExtendedPoint other) {
+        add(other, true);
+    }
+
+    /**
+     * Addition core shared by add and addAffine.
+     *
+     * @param other the point to add
+     * @param affine whether other has Z = 1
+     */
+    private void add(ExtendedPoint other, boolean affine) {
+        long[][] s = scratch();
+        long[] A = s[0], B = s[1], C = s[2], D = s[3], E = s[4], F = s[5], G = s[6], H = s[7];
+        GoldilocksField.mul(A, X, other.X);
+        GoldilocksField.mul(B, Y, other.Y);
+        // C = -d*T1*T2, so F = D + C and G = D - C below
+        GoldilocksField.mul(C, T, other.T);
+        GoldilocksField.mulSmall(C, C, MINUS_D);
+        if (affine) {
+            System.arraycopy(Z, 0, D, 0, GoldilocksField.LIMBS);
+        } else {
+            GoldilocksField.mul(D, Z, other.Z);
+        }
+        GoldilocksField.add(E, X, Y);
+        GoldilocksField.add(H, other.X, other.Y);
+        GoldilocksField.mul(E, E, H);
+        GoldilocksField.sub(E, E, A);
+        GoldilocksField.sub(E, E, B);
+        GoldilocksField.add(F, D, C);
+        GoldilocksField.sub(G, D, C);
+        GoldilocksField.sub(H, B, A);
+        GoldilocksField.mul(X, E, F);
+        GoldilocksField.mul(Y, G, H);
+        GoldilocksField.mul(T, E, H);
+        GoldilocksField.mul(Z, F, G);
+    }
+
+    /**
+     * Dedicated doubling (dbl-2008-hwcd with a = 1), this = 2 * this. Does not read T.
+     * A = X^2, B = Y^2, C = 2*Z^2, E = (X+Y)^2 - A - B, G = A + B, F = G - C, H = A - B,
+     * X3 = E*F, Y3 = G*H, T3 = E*H, Z3 = F*G.
+     */
+    public void twice() {
+        long[][] s = scratch();
+        long[] A = s[0], B = s[1], C = s[2], E = s[4], F = s[5], G = s[6], H = s[7];
+        GoldilocksField.square(A, X);
+        GoldilocksField.square(B, Y);
+        GoldilocksField.square(C, Z);
+        GoldilocksField.add(C, C, C);
+        GoldilocksField.add(E, X, Y);
+        GoldilocksField.square(E, E);
+        GoldilocksField.sub(E, E, A);
+        GoldilocksField.sub(E, E, B);
+        GoldilocksField.add(G, A, B);
+        GoldilocksField.sub(F, G, C);
+        GoldilocksField.sub(H, A, B);
+        GoldilocksField.mul(X, E, F);
+        GoldilocksField.mul(Y, G, H);
+        GoldilocksField.mul(T, E, H);
+        GoldilocksField.mul(Z, F, G);
+    }
+
+    /**
+     * Returns the temporaries of the formulas, allocating them on first use.
+     *
+     * @return eight field elements
+     */
+    private long[][] scratch() {
+        if (scratch == null) {
+            scratch = new long[8][GoldilocksField.LIMBS];
+        }
+        return scratch;
+    }
+}
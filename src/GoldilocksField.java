@@ -0,0 +1,323 @@
+import java.math.BigInteger;
+
+/**
+ * Arithmetic in the Goldilocks field GF(p) with p = 2^448 - 2^224 - 1, the field of EllipticCurve.
+ * An element is a long[16] of 28-bit limbs, value = sum of limb[i] * 2^(28 * i). Arithmetic
+ * operations write into a caller-supplied array and never allocate; out may be the same array as
+ * an input, and invert takes its temporaries from the caller as well. Only the conversions from
+ * and to BigInteger allocate.
+ * Results are weakly reduced: every limb is at most 2^28, the value is congruent to the exact
+ * result but not necessarily below p. toBigInteger returns the canonical value.
+ * Reduction uses the Solinas form of p, 2^448 = 2^224 + 1 (mod p), so a 2^448 overflow folds
+ * into limbs 0 and 8 without any division.
+ * This implementation was inspired by:
+ * - https://eprint.iacr.org/2015/625 (Ed448-Goldilocks, a new elliptic curve)
+ * - https://sourceforge.net/p/ed448goldilocks/code/ci/master/tree/src/p448/arch_32/f_impl.c
+ */
+public class GoldilocksField {
+    // Number of limbs of a field element
+    public static final int LIMBS = 16;
+    private static final int LIMB_BITS = 28;
+    private static final long LIMB_MASK = (1L << LIMB_BITS) - 1;
+    // Number of temporary field elements invert needs
+    public static final int INVERT_SCRATCH = 5;
+    // 2p as limbs, added before a subtraction so that no limb goes negative
+    private static final long[] TWO_P = new long[LIMBS];
+
+    static {
+        for (int i = 0; i < LIMBS; i++) {
+            TWO_P[i] = 2 * LIMB_MASK;
+        }
+        TWO_P[8] = 2 * (LIMB_MASK - 1);
+    }
+
+    /**
+     * Converts an integer to a field element, reducing it mod p first.
+     *
+     * @param value the integer, may be negative or at least p
+     * @return a new field element
+     */
+    public static long[] fromBigInteger(BigInteger value) {
+        BigInteger reduced = value.mod(EllipticCurve.p);
+        long[] out = new long[LIMBS];
+        for (int i = 0; i < LIMBS; i++) {
+            out[i] = reduced.shiftRight(LIMB_BITS * i).longValue() & LIMB_MASK;
+        }
+        return out;
+    }
+
+    /**
+     * Returns the canonical value of a field element, in the range 0 to p - 1.
+     *
+     * @param a the field element
+     * @return the value as a BigInteger
+     */
+    public static BigInteger toBigInteger(long[] a) {
+        BigInteger value = BigInteger.ZERO;
+        for (int i = LIMBS - 1; i >= 0; i--) {
+            value = value.shiftLeft(LIMB_BITS).add(BigInteger.valueOf(a[i]));
+        }
+        return value.mod(EllipticCurve.p);
+    }
+
+    /**
+     * Sets out to a small non-negative integer.
+     *
+     * @param out the field element to set
+     * @param value the value, less than 2^28
+     */
+    public static void set(long[] out, long value) {
+        out[0] = value;
+        for (int i = 1; i < LIMBS; i++) {
+            out[i] = 0;
+        }
+    }
+
+    /**
+     * out = a + b
+     *
+     * @param out the result
+     * @param a the first operand
+     * @param b the second operand
+     */
+    public static void add(long[] out, long[] a, long[] b) {
+        for (int i = 0; i < LIMBS; i++) {
+            out[i] = a[i] + b[i];
+        }
+        normalize(out);
+    }
+
+    /**
+     * out = a - b, computed as a + 2p - b so that every limb stays non-negative.
+     *
+     * @param out the result
+     * @param a the first operand
+     * @param b the operand to subtract
+     */
+    public static void sub(long[] out, long[] a, long[] b) {
+        for (int i = 0; i < LIMBS; i++) {
+            out[i] = a[i] + TWO_P[i] - b[i];
+        }
+        normalize(out);
+    }
+
+    /**
+     * out = -a
+     *
+     * @param out the result
+     * @param a the operand
+     */
+    public static void negate(long[] out, long[] a) {
+        for (int i = 0; i < LIMBS; i++) {
+            out[i] = TWO_P[i] - a[i];
+        }
+        normalize(out);
+    }
+
+    /**
+     * out = a * k for a small non-negative constant, such as the curve coefficient -d.
+     *
+     * @param out the result
+     * @param a the field element
+     * @param k the constant, less than 2^20
+     */
+    public static void mulSmall(long[] out, long[] a, long k) {
+        for (int i = 0; i < LIMBS; i++) {
+            out[i] = a[i] * k;
+        }
+        normalize(out);
+    }
+
+    /**
+     * out = a * b
+     * Straight-line schoolbook multiplication followed by the Solinas fold of the upper half.
+     * With limbs of at most 2^28 every product is below 2^56 and every folded column sums at
+     * most 38 products, so nothing overflows a signed long.
+     *
+     * @param out the result
+     * @param a the first operand
+     * @param b the second operand
+     */
+    public static void mul(long[] out, long[] a, long[] b) {
+        long a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3], a4 = a[4], a5 = a[5], a6 = a[6], a7 = a[7];
+        long a8 = a[8], a9 = a[9], a10 = a[10], a11 = a[11], a12 = a[12], a13 = a[13], a14 = a[14], a15 = a[15];
+        long b0 = b[0], b1 = b[1], b2 = b[2], b3 = b[3], b4 = b[4], b5 = b[5], b6 = b[6], b7 = b[7];
+        long b8 = b[8], b9 = b[9], b10 = b[10], b11 = b[11], b12 = b[12], b13 = b[13], b14 = b[14], b15 = b[15];
+
+        // Schoolbook product, c_k = sum of a_i * b_j over i + j = k
+        long c0 = a0 * b0;
+        long c1 = a0 * b1 + a1 * b0;
+        long c2 = a0 * b2 + a1 * b1 + a2 * b0;
+        long c3 = a0 * b3 + a1 * b2 + a2 * b1 + a3 * b0;
+        long c4 = a0 * b4 + a1 * b3 + a2 * b2 + a3 * b1 + a4 * b0;
+        long c5 = a0 * b5 + a1 * b4 + a2 * b3 + a3 * b2 + a4 * b1 + a5 * b0;
+        long c6 = a0 * b6 + a1 * b5 + a2 * b4 + a3 * b3 + a4 * b2 + a5 * b1 + a6 * b0;
+        long c7 = a0 * b7 + a1 * b6 + a2 * b5 + a3 * b4 + a4 * b3 + a5 * b2 + a6 * b1 + a7 * b0;
+        long c8 = a0 * b8 + a1 * b7 + a2 * b6 + a3 * b5 + a4 * b4 + a5 * b3 + a6 * b2 + a7 * b1 + a8 * b0;
+        long c9 = a0 * b9 + a1 * b8 + a2 * b7 + a3 * b6 + a4 * b5 + a5 * b4 + a6 * b3 + a7 * b2 + a8 * b1
+                + a9 * b0;
+        long c10 = a0 * b10 + a1 * b9 + a2 * b8 + a3 * b7 + a4 * b6 + a5 * b5 + a6 * b4 + a7 * b3 + a8 * b2
+                + a9 * b1 + a10 * b0;
+        long c11 = a0 * b11 + a1 * b10 + a2 * b9 + a3 * b8 + a4 * b7 + a5 * b6 + a6 * b5 + a7 * b4 + a8 * b3
+                + a9 * b2 + a10 * b1 + a11 * b0;
+        long c12 = a0 * b12 + a1 * b11 + a2 * b10 + a3 * b9 + a4 * b8 + a5 * b7 + a6 * b6 + a7 * b5 + a8 * b4
+                + a9 * b3 + a10 * b2 + a11 * b1 + a12 * b0;
+        long c13 = a0 * b13 + a1 * b12 + a2 * b11 + a3 * b10 + a4 * b9 + a5 * b8 + a6 * b7 + a7 * b6 + a8 * b5
+                + a9 * b4 + a10 * b3 + a11 * b2 + a12 * b1 + a13 * b0;
+        long c14 = a0 * b14 + a1 * b13 + a2 * b12 + a3 * b11 + a4 * b10 + a5 * b9 + a6 * b8 + a7 * b7
+                + a8 * b6 + a9 * b5 + a10 * b4 + a11 * b3 + a12 * b2 + a13 * b1 + a14 * b0;
+        long c15 = a0 * b15 + a1 * b14 + a2 * b13 + a3 * b12 + a4 * b11 + a5 * b10 + a6 * b9 + a7 * b8
+                + a8 * b7 + a9 * b6 + a10 * b5 + a11 * b4 + a12 * b3 + a13 * b2 + a14 * b1 + a15 * b0;
+        long c16 = a1 * b15 + a2 * b14 + a3 * b13 + a4 * b12 + a5 * b11 + a6 * b10 + a7 * b9 + a8 * b8
+                + a9 * b7 + a10 * b6 + a11 * b5 + a12 * b4 + a13 * b3 + a14 * b2 + a15 * b1;
+        long c17 = a2 * b15 + a3 * b14 + a4 * b13 + a5 * b12 + a6 * b11 + a7 * b10 + a8 * b9 + a9 * b8
+                + a10 * b7 + a11 * b6 + a12 * b5 + a13 * b4 + a14 * b3 + a15 * b2;
+        long c18 = a3 * b15 + a4 * b14 + a5 * b13 + a6 * b12 + a7 * b11 + a8 * b10 + a9 * b9 + a10 * b8
+                + a11 * b7 + a12 * b6 + a13 * b5 + a14 * b4 + a15 * b3;
+        long c19 = a4 * b15 + a5 * b14 + a6 * b13 + a7 * b12 + a8 * b11 + a9 * b10 + a10 * b9 + a11 * b8
+                + a12 * b7 + a13 * b6 + a14 * b5 + a15 * b4;
+        long c20 = a5 * b15 + a6 * b14 + a7 * b13 + a8 * b12 + a9 * b11 + a10 * b10 + a11 * b9 + a12 * b8
+                + a13 * b7 + a14 * b6 + a15 * b5;
+        long c21 = a6 * b15 + a7 * b14 + a8 * b13 + a9 * b12 + a10 * b11 + a11 * b10 + a12 * b9 + a13 * b8
+                + a14 * b7 + a15 * b6;
+        long c22 = a7 * b15 + a8 * b14 + a9 * b13 + a10 * b12 + a11 * b11 + a12 * b10 + a13 * b9 + a14 * b8
+                + a15 * b7;
+        long c23 = a8 * b15 + a9 * b14 + a10 * b13 + a11 * b12 + a12 * b11 + a13 * b10 + a14 * b9 + a15 * b8;
+        long c24 = a9 * b15 + a10 * b14 + a11 * b13 + a12 * b12 + a13 * b11 + a14 * b10 + a15 * b9;
+        long c25 = a10 * b15 + a11 * b14 + a12 * b13 + a13 * b12 + a14 * b11 + a15 * b10;
+        long c26 = a11 * b15 + a12 * b14 + a13 * b13 + a14 * b12 + a15 * b11;
+        long c27 = a12 * b15 + a13 * b14 + a14 * b13 + a15 * b12;
+        long c28 = a13 * b15 + a14 * b14 + a15 * b13;
+        long c29 = a14 * b15 + a15 * b14;
+        long c30 = a15 * b15;
+
+        // Fold 2^448 = 2^224 + 1: c_k for k >= 16 moves to k - 16 and k - 8, and the
+        // positions 16..22 reached that way fold once more to k - 24 and k - 16.
+        long r0 = c0 + c16 + c24;
+        long r1 = c1 + c17 + c25;
+        long r2 = c2 + c18 + c26;
+        long r3 = c3 + c19 + c27;
+        long r4 = c4 + c20 + c28;
+        long r5 = c5 + c21 + c29;
+        long r6 = c6 + c22 + c30;
+        long r7 = c7 + c23;
+        long r8 = c8 + c16 + (c24 << 1);
+        long r9 = c9 + c17 + (c25 << 1);
+        long r10 = c10 + c18 + (c26 << 1);
+        long r11 = c11 + c19 + (c27 << 1);
+        long r12 = c12 + c20 + (c28 << 1);
+        long r13 = c13 + c21 + (c29 << 1);
+        long r14 = c14 + c22 + (c30 << 1);
+        long r15 = c15 + c23;
+
+        out[0] = r0;
+        out[1] = r1;
+        out[2] = r2;
+        out[3] = r3;
+        out[4] = r4;
+        out[5] = r5;
+        out[6] = r6;
+        out[7] = r7;
+        out[8] = r8;
+        out[9] = r9;
+        out[10] = r10;
+        out[11] = r11;
+        out[12] = r12;
+        out[13] = r13;
+        out[14] = r14;
+        out[15] = r15;
+        normalize(out);
+    }
+
+    /**
+     * out = a^2
+     *
+     * @param out the result
+     * @param a the operand
+     */
+    public static void square(long[] out, long[] a) {
+        mul(out, a, a);
+    }
+
+    /**
+     * out = a^(2^n), n repeated squarings.
+     *
+     * @param out the result
+     * @param a the operand
+     * @param n number of squarings, at least 1
+     */
+    private static void squareTimes(long[] out, long[] a, int n) {
+        square(out, a);
+        for (int i = 1; i < n; i++) {
+            square(out, out);
+        }
+    }
+
+    /**
+     * out = a^-1 = a^(p - 2) by Fermat's little theorem, a must not be zero.
+     * p - 2 = 2^448 - 2^224 - 3 has 223 one bits, a zero, 222 one bits, a zero and a one,
+     * so the addition chain builds a^(2^k - 1) for k = 222 and 223 and needs 447 squarings
+     * but only 13 multiplications.
+     *
+     * @param out the result
+     * @param a the operand
+     * @param scratch at least INVERT_SCRATCH field elements, none of them out or a
+     */
+    public static void invert(long[] out, long[] a, long[][] scratch) {
+        if (scratch.length < INVERT_SCRATCH) {
+            throw new IllegalArgumentException("invert needs " + INVERT_SCRATCH + " scratch elements");
+        }
+        // a is copied first so that out may be the same array as a.
+        long[] a1 = scratch[0], x6 = scratch[1], x24 = scratch[2], t = scratch[3], u = scratch[4];
+        System.arraycopy(a, 0, a1, 0, LIMBS);
+
+        // x_k = a^(2^k - 1)
+        square(t, a1);
+        mul(t, t, a1);                 // x2
+        square(u, t);
+        mul(u, u, a1);                 // x3
+        squareTimes(x6, u, 3);
+        mul(x6, x6, u);
+        squareTimes(t, x6, 6);
+        mul(t, t, x6);                 // x12
+        squareTimes(x24, t, 12);
+        mul(x24, x24, t);
+        squareTimes(u, x24, 24);
+        mul(u, u, x24);                // x48
+        squareTimes(t, u, 48);
+        mul(t, t, u);                  // x96
+        squareTimes(u, t, 96);
+        mul(u, u, t);                  // x192
+        squareTimes(u, u, 24);
+        mul(u, u, x24);                // x216
+        squareTimes(u, u, 6);
+        mul(u, u, x6);                 // x222
+        square(t, u);
+        mul(t, t, a1);                 // x223
+
+        // a^(p - 2) = ((x223^2)^(2^222) * x222)^4 * a
+        squareTimes(t, t, 223);
+        mul(t, t, u);
+        squareTimes(t, t, 2);
+        mul(out, t, a1);
+    }
+
+    /**
+     * Propagates carries so that every limb is at most 2^28, folding the carry out of the top
+     * limb back in with 2^448 = 2^224 + 1. Expects non-negative limbs below 2^62.
+     *
+     * @param r the limbs to normalize in place
+     */
+    private static void normalize(long[] r) {
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < LIMBS - 1; i++) {
+                r[i + 1] += r[i] >>> LIMB_BITS;
+                r[i] &= LIMB_MASK;
+            }
+            long top = r[LIMBS - 1] >>> LIMB_BITS;
+            r[LIMBS - 1] &= LIMB_MASK;
+            r[0] += top;
+            r[8] += top;
+        }
+    }
+}
@@ -0,0 +1,484 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+/**
+ * An incremental Keccak sponge.
+ * Input is absorbed as it arrives through update(), so callers never have to hold the whole
+ * message in memory, and output is squeezed on demand once absorption is finished.
+ * The first call to squeeze() applies the padding and switches the sponge to squeezing.
+ * This implementation was inspired by:
+ * - https://github.com/mjosaarinen/tiny_sha3/blob/master/sha3.c
+ */
+public class KeccakSponge {
+    // Little-endian 64-bit views used to read whole lanes straight from the input
+    private static final VarHandle ARRAY_LANE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BUFFER_LANE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // Size of the buffer used to absorb from a channel
+    static final int STREAM_BUFFER_SIZE = 1 << 16;
+    // Size of the windows in which files are mapped by updateMapped
+    private static final long MAP_WINDOW_SIZE = 1L << 26;
+    // Unmaps a window once absorbed, null if sun.misc.Unsafe is not available
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+    // Number of sponges advanced together by hashEach
+    private static final int BATCH_WIDTH = 8;
+
+    // The 25-lane Keccak state
+    private final long[] state = new long[25];
+    // Rate in bytes
+    private final int rate;
+    // Number of rounds of the permutation
+    private final int rounds;
+    // Domain separation bits including the first padding bit, e.g. 0x1F for SHAKE and 0x04 for cSHAKE
+    private final byte suffix;
+    // Bytes absorbed right before the padding, e.g. right_encode(0) for KMACXOF256
+    private final byte[] trailer;
+    // Whether to skip the final padding bit when the suffix fills the block, as the original cSHAKE256 did
+    private final boolean legacyPadding;
+    // Position within the current rate block
+    private int position;
+    private boolean squeezing;
+
+    /**
+     * Creates an empty sponge.
+     *
+     * @param capacity The capacity in bits
+     * @param rounds Number of rounds of the permutation, 24 for Keccak-f[1600]
+     * @param suffix The domain separation bits including the first padding bit
+     */
+    public KeccakSponge(int capacity, int rounds, byte suffix) {
+        this(capacity, rounds, suffix, new byte[0], false);
+    }
+
+    /**
+     * Creates an empty sponge that absorbs a fixed trailer before padding.
+     * With legacyPadding the final 0x80 bit is left out when the suffix lands on the last byte
+     * of the block. That is not FIPS 202 padding, but it is what the original cSHAKE256 and
+     * KMACXOF256 computed, so existing digests, tags and cryptograms depend on it.
+     *
+     * @param capacity The capacity in bits
+     * @param rounds Number of rounds of the permutation, 24 for Keccak-f[1600]
+     * @param suffix The domain separation bits including the first padding bit
+     * @param trailer Bytes absorbed after all input, right before the padding
+     * @param legacyPadding Whether to reproduce the original cSHAKE256 padding
+     */
+    KeccakSponge(int capacity, int rounds, byte suffix, byte[] trailer, boolean legacyPadding) {
+        if (capacity <= 0 || capacity >= 1600 || capacity % 64 != 0) {
+            throw new IllegalArgumentException("Capacity must be a multiple of 64 between 64 and 1536");
+        }
+        if (rounds < 1 || rounds > 24) {
+            throw new IllegalArgumentException("Rounds must be between 1 and 24");
+        }
+        this.rate = (1600 - capacity) / 8;
+        this.rounds = rounds;
+        this.suffix = suffix;
+        this.trailer = trailer;
+        this.legacyPadding = legacyPadding;
+    }
+
+    /**
+     * Creates a sponge that continues from the current state of another one.
+     *
+     * @param other The sponge to copy
+     */
+    KeccakSponge(KeccakSponge other) {
+        this(other, other.trailer);
+    }
+
+    /**
+     * Creates a sponge that continues from the current state of another one with a different trailer,
+     * e.g. a KMAC sponge continuing from a cached cSHAKE prefix state.
+     *
+     * @param other The sponge to copy
+     * @param trailer Bytes absorbed after all input, right before the padding
+     */
+    KeccakSponge(KeccakSponge other, byte[] trailer) {
+        System.arraycopy(other.state, 0, this.state, 0, this.state.length);
+        this.rate = other.rate;
+        this.rounds = other.rounds;
+        this.suffix = other.suffix;
+        this.trailer = trailer;
+        this.legacyPadding = other.legacyPadding;
+        this.position = other.position;
+        this.squeezing = other.squeezing;
+    }
+
+    /**
+     * Absorbs everything the channel delivers until end of stream.
+     * The input length is only bounded by the channel and at most STREAM_BUFFER_SIZE bytes of
+     * it are held at a time, so files larger than any array can be absorbed.
+     *
+     * @param in The input channel
+     * @return This sponge
+     * @throws IOException If reading from the channel fails
+     */
+    public KeccakSponge update(ReadableByteChannel in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        while (in.read(buffer) != -1) {
+            buffer.flip();
+            update(buffer);
+            buffer.clear();
+        }
+        return this;
+    }
+
+    /**
+     * Absorbs the whole content of a regular file by memory-mapping it window by window.
+     * Lanes are read straight from the mapped pages, so the content is never copied onto the
+     * heap, and every window is unmapped as soon as it has been absorbed so that resident memory
+     * stays within one window. The JDK has no madvise-style access hint for mapped buffers;
+     * sequential access is left to the operating system's read-ahead.
+     * A channel reporting size 0, such as a procfs file, is read as a stream instead, since its
+     * size says nothing about its content. Pipes and devices cannot be mapped at all and should
+     * go through update(ReadableByteChannel).
+     *
+     * @param file The file channel, read from position 0 to its current size
+     * @return This sponge
+     * @throws IOException If mapping or reading the file fails
+     */
+    public KeccakSponge updateMapped(FileChannel file) throws IOException {
+        long size = file.size();
+        if (size == 0) {
+            return update((ReadableByteChannel) file);
+        }
+        for (long offset = 0; offset < size; offset += MAP_WINDOW_SIZE) {
+            MappedByteBuffer window = file.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_WINDOW_SIZE, size - offset));
+            update(window);
+            unmap(window);
+        }
+        return this;
+    }
+
+    /**
+     * Releases a mapped window right away through sun.misc.Unsafe.invokeCleaner instead of
+     * waiting for the garbage collector. The window must not be used afterwards.
+     *
+     * @param window The mapped buffer to release
+     */
+    private static void unmap(MappedByteBuffer window) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) window);
+        } catch (Throwable e) {
+            // The mapping is still released when the buffer is collected.
+        }
+    }
+
+    /**
+     * Looks up sun.misc.Unsafe.invokeCleaner bound to the Unsafe instance.
+     * The jdk.unsupported module opens sun.misc, so no command line flags are needed.
+     *
+     * @return A handle taking a ByteBuffer, or null if the method is not available
+     */
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns an independent copy of this sponge, including the partially absorbed block and
+     * whether it is squeezing. Absorb a shared prefix once, then copy it for every suffix.
+     *
+     * @return A new sponge in the same state
+     */
+    public KeccakSponge copy() {
+        return new KeccakSponge(this);
+    }
+
+    /**
+     * Absorbs the given bytes.
+     *
+     * @param in The input bytes
+     * @return This sponge
+     */
+    public KeccakSponge update(byte[] in) {
+        return update(in, 0, in.length);
+    }
+
+    /**
+     * Absorbs a range of the given bytes.
+     *
+     * @param in The input bytes
+     * @param off Offset of the first byte to absorb
+     * @param len Number of bytes to absorb
+     * @return This sponge
+     */
+    public KeccakSponge update(byte[] in, int off, int len) {
+        if (off < 0 || len < 0 || off + len > in.length || off + len < 0) {
+            throw new IndexOutOfBoundsException("Range out of bounds of the input array");
+        }
+        if (squeezing) {
+            throw new IllegalStateException("Cannot absorb after squeezing has started");
+        }
+        int end = off + len;
+        // Complete a partially filled lane byte by byte.
+        while (off < end && (position & 7) != 0) {
+            absorbByte(in[off++]);
+        }
+        // XOR whole little-endian lanes directly from the input, no intermediate copies.
+        while (end - off >= 8) {
+            state[position >>> 3] ^= (long) ARRAY_LANE.get(in, off);
+            off += 8;
+            position += 8;
+            if (position == rate) {
+                KeccakProcessor.permute(state, rounds);
+                position = 0;
+            }
+        }
+        while (off < end) {
+            absorbByte(in[off++]);
+        }
+        return this;
+    }
+
+    /**
+     * Absorbs the remaining bytes of the given buffer, advancing its position to its limit.
+     *
+     * @param in The input buffer
+     * @return This sponge
+     */
+    public KeccakSponge update(ByteBuffer in) {
+        if (in.hasArray()) {
+            int len = in.remaining();
+            update(in.array(), in.arrayOffset() + in.position(), len);
+            in.position(in.position() + len);
+            return this;
+        }
+        if (squeezing) {
+            throw new IllegalStateException("Cannot absorb after squeezing has started");
+        }
+        int off = in.position();
+        int end = in.limit();
+        while (off < end && (position & 7) != 0) {
+            absorbByte(in.get(off++));
+        }
+        while (end - off >= 8) {
+            state[position >>> 3] ^= (long) BUFFER_LANE.get(in, off);
+            off += 8;
+            position += 8;
+            if (position == rate) {
+                KeccakProcessor.permute(state, rounds);
+                position = 0;
+            }
+        }
+        while (off < end) {
+            absorbByte(in.get(off++));
+        }
+        in.position(end);
+        return this;
+    }
+
+    /**
+     * Squeezes output bytes into the given range. Can be called repeatedly to extend the output.
+     *
+     * @param out The output array
+     * @param off Offset of the first byte to write
+     * @param len Number of bytes to write
+     */
+    public void squeeze(byte[] out, int off, int len) {
+        if (off < 0 || len < 0 || off + len > out.length || off + len < 0) {
+            throw new IndexOutOfBoundsException("Range out of bounds of the output array");
+        }
+        if (!squeezing) {
+            pad();
+        }
+        for (int i = off; i < off + len; i++) {
+            if (position == rate) {
+                KeccakProcessor.permute(state, rounds);
+                position = 0;
+            }
+            out[i] = (byte) (state[position >>> 3] >>> ((position & 7) << 3));
+            position++;
+        }
+    }
+
+    /**
+     * Squeezes len output bytes and XORs them with the input into the output, i.e.
+     * out[outOff + i] = in[inOff + i] ^ z[i] for the next output bytes z. The keystream is
+     * never materialised: whole lanes are XORed straight from the state as each block is
+     * produced. in and out may be the same array at the same offset to work in place.
+     *
+     * @param in The input array
+     * @param inOff Offset of the first input byte
+     * @param out The output array
+     * @param outOff Offset of the first output byte
+     * @param len Number of bytes to process
+     */
+    public void squeezeXor(byte[] in, int inOff, byte[] out, int outOff, int len) {
+        if (inOff < 0 || len < 0 || inOff + len > in.length || inOff + len < 0) {
+            throw new IndexOutOfBoundsException("Range out of bounds of the input array");
+        }
+        if (outOff < 0 || outOff + len > out.length || outOff + len < 0) {
+            throw new IndexOutOfBoundsException("Range out of bounds of the output array");
+        }
+        if (!squeezing) {
+            pad();
+        }
+        while (len > 0) {
+            if (position == rate) {
+                KeccakProcessor.permute(state, rounds);
+                position = 0;
+            }
+            if ((position & 7) == 0 && len >= 8) {
+                // XOR whole lanes up to the end of the block; the rate is a multiple of 8 bytes.
+                int lanes = Math.min(len, rate - position) >>> 3;
+                for (int i = 0; i < lanes; i++) {
+                    long v = (long) ARRAY_LANE.get(in, inOff) ^ state[position >>> 3];
+                    ARRAY_LANE.set(out, outOff, v);
+                    inOff += 8;
+                    outOff += 8;
+                    position += 8;
+                }
+                len -= lanes << 3;
+            } else {
+                out[outOff++] = (byte) (in[inOff++] ^ (state[position >>> 3] >>> ((position & 7) << 3)));
+                position++;
+                len--;
+            }
+        }
+    }
+
+    /**
+     * Squeezes output bytes into the remaining space of the given buffer, advancing its position
+     * to its limit. Can be called repeatedly to extend the output.
+     *
+     * @param out The output buffer
+     */
+    public void squeeze(ByteBuffer out) {
+        if (out.hasArray()) {
+            int len = out.remaining();
+            squeeze(out.array(), out.arrayOffset() + out.position(), len);
+            out.position(out.position() + len);
+            return;
+        }
+        if (!squeezing) {
+            pad();
+        }
+        int end = out.limit();
+        for (int i = out.position(); i < end; i++) {
+            if (position == rate) {
+                KeccakProcessor.permute(state, rounds);
+                position = 0;
+            }
+            out.put(i, (byte) (state[position >>> 3] >>> ((position & 7) << 3)));
+            position++;
+        }
+        out.position(end);
+    }
+
+    /**
+     * Squeezes the next bitLength bits of output.
+     *
+     * @param bitLength The desired bit length of the output
+     * @return A byte array holding the output
+     */
+    public byte[] squeeze(int bitLength) {
+        byte[] out = new byte[bitLength / 8];
+        squeeze(out, 0, out.length);
+        return out;
+    }
+
+    /**
+     * XORs a single byte into the state, permuting whenever a rate block is full.
+     *
+     * @param b The byte to absorb
+     */
+    private void absorbByte(byte b) {
+        state[position >>> 3] ^= (b & 0xFFL) << ((position & 7) << 3);
+        if (++position == rate) {
+            KeccakProcessor.permute(state, rounds);
+            position = 0;
+        }
+    }
+
+    /**
+     * Absorbs the trailer, applies the domain suffix and pad10*1, and switches to squeezing.
+     */
+    private void pad() {
+        padWithoutPermutation();
+        KeccakProcessor.permute(state, rounds);
+    }
+
+    /**
+     * Absorbs the trailer, applies the domain suffix and pad10*1 and switches to squeezing,
+     * leaving the final permutation of the padded block to the caller.
+     */
+    private void padWithoutPermutation() {
+        for (byte b : trailer) {
+            absorbByte(b);
+        }
+        state[position >>> 3] ^= (suffix & 0xFFL) << ((position & 7) << 3);
+        // The original cSHAKE256 only padded when the suffix left room in the block.
+        if (!legacyPadding || position != rate - 1) {
+            state[(rate - 1) >>> 3] ^= 0x80L << (((rate - 1) & 7) << 3);
+        }
+        position = 0;
+        squeezing = true;
+    }
+
+    /**
+     * Hashes many messages from the same starting state and writes the outputs back to back.
+     * Messages are processed in groups of BATCH_WIDTH: a fixed pool of sponges is reset to the
+     * start state for every group, and the final permutations of a group go through
+     * KeccakProcessor.keccakBatch together, on SIMD lanes when the Vector API kernel is loaded.
+     * Short messages therefore cost one state copy and one batched permutation each, without
+     * any per-message allocation.
+     *
+     * @param start The sponge every message continues from, left unchanged
+     * @param messages The messages to hash
+     * @param out The output array
+     * @param off Offset of the first output byte
+     * @param outputLength Number of output bytes per message
+     */
+    static void hashEach(KeccakSponge start, List<byte[]> messages, byte[] out, int off, int outputLength) {
+        if (start.squeezing) {
+            throw new IllegalStateException("Cannot absorb after squeezing has started");
+        }
+        int count = messages.size();
+        if (off < 0 || outputLength < 0 || off + (long) count * outputLength > out.length) {
+            throw new IndexOutOfBoundsException("Output array too small for the batch");
+        }
+        KeccakSponge[] pool = new KeccakSponge[Math.min(BATCH_WIDTH, count)];
+        long[][] states = new long[pool.length][];
+        for (int j = 0; j < pool.length; j++) {
+            pool[j] = start.copy();
+            states[j] = pool[j].state;
+        }
+        for (int first = 0; first < count; first += pool.length) {
+            int width = Math.min(pool.length, count - first);
+            for (int j = 0; j < width; j++) {
+                KeccakSponge sponge = pool[j];
+                // Reset to the start state in place, then absorb and pad the message.
+                System.arraycopy(start.state, 0, sponge.state, 0, sponge.state.length);
+                sponge.position = start.position;
+                sponge.squeezing = false;
+                sponge.update(messages.get(first + j));
+                sponge.padWithoutPermutation();
+            }
+            KeccakProcessor.keccakBatch(states, width, start.rounds);
+            for (int j = 0; j < width; j++) {
+                pool[j].squeeze(out, off + (first + j) * outputLength, outputLength);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.List;
+
+/**
+ * A KMACXOF256 instance bound to one key and customization string.
+ * The prefix and key blocks are absorbed once when the context is created; every MAC continues
+ * from a copy of that keyed state, so repeated MACs under the same key only pay for the message
+ * blocks and the final permutation. A context is never modified after creation and can be
+ * shared between threads.
+ * This implementation was inspired by:
+ * - https://doi.org/10.6028/NIST.SP.800-185
+ */
+public class KmacContext {
+    // Sponge state right after the padded key block, only ever copied
+    private final KeccakSponge keyed;
+
+    /**
+     * Creates a context for the given key and customization string.
+     *
+     * @param key The key as byte array
+     * @param customization A custom string as byte array
+     */
+    public KmacContext(byte[] key, byte[] customization) {
+        this.keyed = CryptoUtils.newKMACXOF256(key, customization);
+    }
+
+    /**
+     * Computes KMACXOF256 of the message under this context's key.
+     * Same output as CryptoUtils.KMACXOF256(key, message, outputBitLength, customization).
+     *
+     * @param message The input byte array
+     * @param outputBitLength The desired bit length of the output
+     * @return A byte array representing the hash text
+     */
+    public byte[] mac(byte[] message, int outputBitLength) {
+        return newSponge().update(message).squeeze(outputBitLength);
+    }
+
+    /**
+     * Computes KMACXOF256 of a message given in parts, absorbed in order as if concatenated.
+     *
+     * @param outputBitLength The desired bit length of the output
+     * @param messageParts The message byte arrays, in order
+     * @return A byte array representing the hash text
+     */
+    public byte[] mac(int outputBitLength, byte[]... messageParts) {
+        KeccakSponge sponge = newSponge();
+        for (byte[] part : messageParts) {
+            sponge.update(part);
+        }
+        return sponge.squeeze(outputBitLength);
+    }
+
+    /**
+     * Computes KMACXOF256 of every message under this context's key and writes the outputs
+     * back to back, the i-th one at off + i * outputBitLength / 8.
+     *
+     * @param messages The messages to authenticate
+     * @param outputBitLength The desired bit length of every output
+     * @param out The output array
+     * @param off Offset of the first output byte
+     */
+    public void macMany(List<byte[]> messages, int outputBitLength, byte[] out, int off) {
+        KeccakSponge.hashEach(keyed, messages, out, off, outputBitLength / 8);
+    }
+
+    /**
+     * Returns a fresh sponge keyed by this context, ready to absorb a message incrementally.
+     *
+     * @return A KMACXOF256 sponge that has absorbed the key
+     */
+    public KeccakSponge newSponge() {
+        return keyed.copy();
+    }
+}
@@ -1,9 +1,15 @@
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.List;
@@ -95,6 +101,7 @@ public class Main {
         System.out.println("Choose sub-option:");
         System.out.println("1. Compute a plain cryptographic hash of a file");
         System.out.println("2. Compute a plain cryptographic hash of text input");
+        System.out.println("3. Compute a parallel KangarooTwelve (KT256) hash of a file");
 
         int subOption = scanner.nextInt();
         scanner.nextLine(); // Consume the newline character after reading the integer.
@@ -105,9 +112,10 @@ public class Main {
             case 1:
                 System.out.println("Enter the file path:");
                 String filePath = scanner.nextLine();
-                inputBytes = readFileToByteArray(filePath); // Read the file content into a byte array.
-                hashBytes = CryptoUtils.KMACXOF256("".getBytes(), inputBytes, 512, "D".getBytes());
-                System.out.println("Hash of the file: " + CryptoUtils.bytesToHexString(hashBytes));
+                hashBytes = macFile(filePath, "".getBytes(), "D"); // Stream the file through the sponge.
+                if (hashBytes != null) {
+                    System.out.println("Hash of the file: " + CryptoUtils.bytesToHexString(hashBytes));
+                }
                 break;
 
             case 2:
@@ -118,6 +126,15 @@ public class Main {
                 System.out.println("Hash of the text: " + CryptoUtils.bytesToHexString(hashBytes));
                 break;
 
+            case 3:
+                System.out.println("Enter the file path:");
+                String treeFilePath = scanner.nextLine();
+                hashBytes = treeHashFile(treeFilePath); // Read the file chunk by chunk into the tree.
+                if (hashBytes != null) {
+                    System.out.println("KT256 hash of the file: " + CryptoUtils.bytesToHexString(hashBytes));
+                }
+                break;
+
             default:
                 System.out.println("Invalid sub-option. Please choose a valid sub-option.");
                 break;
@@ -143,12 +160,13 @@ public class Main {
             case 1:
                 System.out.println("Enter the file path:");
                 String filePath = scanner.nextLine();
-                inputBytes = readFileToByteArray(filePath);
 
                 System.out.println("Please enter a passphrase: ");
                 String thePassphrase = scanner.nextLine();
-                hashBytes = CryptoUtils.KMACXOF256(thePassphrase.getBytes(), inputBytes, 512, "T".getBytes());
-                System.out.println("MAC of the file: " + CryptoUtils.bytesToHexString(hashBytes));
+                hashBytes = macFile(filePath, thePassphrase.getBytes(), "T");
+                if (hashBytes != null) {
+                    System.out.println("MAC of the file: " + CryptoUtils.bytesToHexString(hashBytes));
+                }
                 break;
 
             case 2:
@@ -174,26 +192,20 @@ public class Main {
      */
     private static void handleEncryptionOption(Scanner scanner) {
         scanner.nextLine();
-        byte[] inputBytes;
 
         System.out.println("Enter the file path of the data to be encrypted:");
         String filePath = scanner.nextLine();
-        inputBytes = readFileToByteArray(filePath);
 
         System.out.println("Please enter a passphrase: ");
         String passphrase = scanner.nextLine();
 
-        byte[] encryptedData = encrypt(inputBytes, passphrase);
-
-        System.out.println(CryptoUtils.bytesToHexString(encryptedData));
-
-        // Save the encrypted data to a file
+        // Encrypt the file into filePath.encrypted chunk by chunk
         String encryptedFilePath = filePath + ".encrypted";
         try {
-            java.nio.file.Files.write(java.nio.file.Paths.get(encryptedFilePath), encryptedData);
+            encryptFile(Paths.get(filePath), Paths.get(encryptedFilePath), passphrase);
             System.out.println("Encrypted data saved to: " + encryptedFilePath);
-        } catch (java.io.IOException e) {
-            System.err.println("Error writing to the encrypted file: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error encrypting the file: " + e.getMessage());
         }
     }
 
@@ -225,23 +237,17 @@ public class Main {
         System.out.println("Enter the path of the encrypted file:");
         String encryptedFilePath = scanner.nextLine();
 
-        // Read the encrypted file content
-        byte[] encryptedData = readFileToByteArray(encryptedFilePath);
-        if (encryptedData.length == 0) {
-            return;  // Exit if there was an error reading the file
-        }
-
         // Ask user for the passphrase
         System.out.println("Please enter the passphrase used for encryption:");
         String passphrase = scanner.nextLine();
 
+        // Decrypt the file into encryptedFilePath.decrypted once the tag has been verified
+        String decryptedFilePath = encryptedFilePath + ".decrypted";
         try {
-            // Decrypt the file
-            byte[] decryptedData = decrypt(encryptedData, passphrase);
-
-            System.out.println("Decrypted data:");
-            System.out.println(new String(decryptedData));
-
+            decryptFile(Paths.get(encryptedFilePath), Paths.get(decryptedFilePath), passphrase);
+            System.out.println("Decrypted data saved to: " + decryptedFilePath);
+        } catch (IOException e) {
+            System.err.println("Error decrypting the file: " + e.getMessage());
         } catch (IllegalArgumentException e) {
             // Error during decryption, possibly due to wrong passphrase or tampered data
             System.err.println(e.getMessage());
@@ -250,13 +256,16 @@ public class Main {
 
 
     /**
-     * Encrypt data using a provided passphrase.
+     * Encrypt a file using a provided passphrase, writing the cryptogram rand || c || t.
+     * The file is streamed: every chunk is absorbed into the tag and XORed with the keystream
+     * in place before it is written, so files of any size are encrypted in constant memory.
      *
-     * @param data the data
+     * @param input the file to encrypt
+     * @param output the file receiving the cryptogram
      * @param passphrase the passphrase
-     * @return the encrypted data
+     * @throws IOException if reading or writing fails
      */
-    private static byte[] encrypt(byte[] data, String passphrase) {
+    private static void encryptFile(Path input, Path output, String passphrase) throws IOException {
         SecureRandom sr = new SecureRandom();
         byte[] rand = new byte[64];
         sr.nextBytes(rand);
@@ -266,45 +275,145 @@ public class Main {
         byte[] keys1 = Arrays.copyOfRange(keys, 0, 64);
         byte[] keys2 = Arrays.copyOfRange(keys, 64, 128);
 
-        byte[] c = CryptoUtils.KMACXOF256(keys1, "".getBytes(), (data.length * 8), "SKE".getBytes());
-        c = CryptoUtils.xorBytes(c, data);
-        byte[] t = CryptoUtils.KMACXOF256(keys2, data, 512, "SKA".getBytes());
+        // c = KMACXOF256(keys1, "", |m|, "SKE") xor m, t = KMACXOF256(keys2, m, 512, "SKA")
+        KeccakSponge keystream = CryptoUtils.newKMACXOF256(keys1, "SKE".getBytes());
+        KeccakSponge tag = CryptoUtils.newKMACXOF256(keys2, "SKA".getBytes());
 
-        return CryptoUtils.concat(CryptoUtils.concat(rand, c), t);
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.wrap(rand));
+            encryptChunks(in, out, keystream, tag);
+            writeFully(out, ByteBuffer.wrap(tag.squeeze(512)));
+        }
     }
 
     /**
-     * Decrypt data using a provided passphrase.
+     * Encrypts a channel into another one chunk by chunk until end of stream.
+     * Every chunk is absorbed into the tag and then XORed with the keystream in place before it
+     * is written, so the memory used does not depend on the size of the input.
      *
-     * @param data the data
-     * @param passphrase the passphrase
-     * @return the decrypted data
+     * @param in the plaintext
+     * @param out the channel receiving the ciphertext
+     * @param keystream the sponge squeezing the keystream
+     * @param tag the sponge absorbing the plaintext
+     * @throws IOException if reading or writing fails
      */
-    private static byte[] decrypt(byte[] data, String passphrase) {
-        if (data.length <= 128) {
-            throw new IllegalArgumentException("Invalid encrypted data");
+    private static void encryptChunks(FileChannel in, FileChannel out, KeccakSponge keystream, KeccakSponge tag)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        while (in.read(buffer) != -1) {
+            buffer.flip();
+            tag.update(buffer.array(), 0, buffer.limit());
+            keystream.squeezeXor(buffer.array(), 0, buffer.array(), 0, buffer.limit());
+            writeFully(out, buffer);
+            buffer.clear();
         }
+    }
 
-        byte[] rand = Arrays.copyOfRange(data, 0, 64);
-        byte[] encrypted = Arrays.copyOfRange(data, 64, data.length - 64);
-        byte[] givenTag = Arrays.copyOfRange(data, data.length - 64, data.length);
+    /**
+     * Writes the remaining bytes of a buffer to a channel.
+     *
+     * @param channel the channel
+     * @param buffer the buffer
+     * @throws IOException if writing fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
 
-        byte[] keys = CryptoUtils.KMACXOF256(CryptoUtils.concat(rand, passphrase.getBytes()),
-                "".getBytes(), 1024, "S".getBytes());
-        byte[] keys1 = Arrays.copyOfRange(keys, 0, 64);
-        byte[] keys2 = Arrays.copyOfRange(keys, 64, 128);
+    /**
+     * Reads bytes from a given position of a channel until the buffer is full.
+     *
+     * @param channel the channel
+     * @param buffer the buffer
+     * @param position the position of the first byte to read
+     * @throws IOException if reading fails or the channel ends first
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Decrypt a cryptogram rand || c || t using a provided passphrase.
+     * The ciphertext is streamed twice: the first pass only recomputes the tag, the second one
+     * writes the plaintext, so nothing is written unless the tag matches and cryptograms of any
+     * size are decrypted in constant memory.
+     *
+     * @param input the cryptogram
+     * @param output the file receiving the plaintext
+     * @param passphrase the passphrase
+     * @throws IOException if reading or writing fails
+     * @throws IllegalArgumentException if the cryptogram is too short or its tag does not match
+     */
+    private static void decryptFile(Path input, Path output, String passphrase) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < 128) {
+                throw new IllegalArgumentException("Invalid encrypted data");
+            }
+
+            byte[] rand = new byte[64];
+            byte[] givenTag = new byte[64];
+            readFully(in, ByteBuffer.wrap(rand), 0);
+            readFully(in, ByteBuffer.wrap(givenTag), size - 64);
 
-        byte[] decrypted = CryptoUtils.KMACXOF256(keys1, "".getBytes(),
-                encrypted.length * 8, "SKE".getBytes());
-        decrypted = CryptoUtils.xorBytes(decrypted, encrypted);
+            byte[] keys = CryptoUtils.KMACXOF256(CryptoUtils.concat(rand, passphrase.getBytes()),
+                    "".getBytes(), 1024, "S".getBytes());
+            byte[] keys1 = Arrays.copyOfRange(keys, 0, 64);
+            byte[] keys2 = Arrays.copyOfRange(keys, 64, 128);
 
-        byte[] calculatedTag = CryptoUtils.KMACXOF256(keys2, decrypted, 512, "SKA".getBytes());
+            // m = KMACXOF256(keys1, "", |c|, "SKE") xor c, t' = KMACXOF256(keys2, m, 512, "SKA")
+            KeccakSponge keystream = CryptoUtils.newKMACXOF256(keys1, "SKE".getBytes());
+            KeccakSponge replay = keystream.copy();
+            KeccakSponge tag = CryptoUtils.newKMACXOF256(keys2, "SKA".getBytes());
+            decryptChunks(in, size - 64, keystream, tag, null);
 
-        if (!Arrays.equals(givenTag, calculatedTag)) {
-            throw new IllegalArgumentException("MAC tag does not match. Data may be corrupted or tampered with.");
+            if (!Arrays.equals(givenTag, tag.squeeze(512))) {
+                throw new IllegalArgumentException("MAC tag does not match. Data may be corrupted or tampered with.");
+            }
+
+            try (FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                decryptChunks(in, size - 64, replay, null, out);
+            }
         }
+    }
 
-        return decrypted;
+    /**
+     * Decrypts the ciphertext between offset 64 and a given end of a cryptogram chunk by chunk,
+     * absorbing the plaintext into a tag, writing it to a channel, or both.
+     *
+     * @param in the cryptogram
+     * @param end the position right after the last ciphertext byte
+     * @param keystream the sponge squeezing the keystream
+     * @param tag the sponge absorbing the plaintext, or null
+     * @param out the channel receiving the plaintext, or null
+     * @throws IOException if reading or writing fails
+     */
+    private static void decryptChunks(FileChannel in, long end, KeccakSponge keystream, KeccakSponge tag,
+                                      FileChannel out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (long position = 64; position < end; position += buffer.limit()) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            readFully(in, buffer, position);
+            buffer.flip();
+            keystream.squeezeXor(buffer.array(), 0, buffer.array(), 0, buffer.limit());
+            if (tag != null) {
+                tag.update(buffer.array(), 0, buffer.limit());
+            }
+            if (out != null) {
+                writeFully(out, buffer);
+            }
+        }
     }
 
     private static void keyPair() {
@@ -317,8 +426,7 @@ public class Main {
         BigInteger s = new BigInteger(1, sBytes).multiply(BigInteger.valueOf(4)).mod(EllipticCurve.r);
 
         // V = s * G
-        EllipticCurvePoint G = EllipticCurve.getG();
-        EllipticCurvePoint V = EllipticCurve.exponentiation(G, s);
+        EllipticCurvePoint V = EllipticCurve.multiplyBase(s);
 
         // Print
         System.out.println("Generated Public Key: \n" + V.getX().toString(16) + "\n" + V.getY().toString(16));
@@ -347,29 +455,25 @@ public class Main {
             BigInteger k = new BigInteger(1, kBytes).multiply(BigInteger.valueOf(4)).mod(EllipticCurve.r);
 
             // W = k * V, Z = k * G
-            EllipticCurvePoint W = EllipticCurve.exponentiation(publicKey, k);
-            EllipticCurvePoint G = EllipticCurve.getG();
-            EllipticCurvePoint Z = EllipticCurve.exponentiation(G, k);
+            EllipticCurvePoint W = EllipticCurve.multiplyPublicKey(publicKey, k);
+            EllipticCurvePoint Z = EllipticCurve.multiplyBase(k);
 
             byte[] keka = CryptoUtils.KMACXOF256(W.getX().toByteArray(), "".getBytes(), 2 * 448, "PK".getBytes());
             byte[] ke = Arrays.copyOfRange(keka, 0, keka.length / 2);
             byte[] ka = Arrays.copyOfRange(keka, keka.length / 2, keka.length);
 
-            byte[] m = readFileToByteArray(dataFilePath);
-
-            byte[] c = CryptoUtils.KMACXOF256(ke, "".getBytes(), m.length * 8, "PKE".getBytes());
-            byte[] encryptedData = CryptoUtils.xorBytes(m, c);
-            byte[] t = CryptoUtils.KMACXOF256(ka, m, 448, "PKA".getBytes());
-
-            String encryptedDataHexString = bytesToHexString(encryptedData);
-            System.out.println("Encrypted Data (Hex): " + encryptedDataHexString);
-
-            // Writing the file
-            try (java.io.OutputStream os = java.nio.file.Files.newOutputStream(java.nio.file.Paths.get(outputFilePath))) {
-                os.write(Z.getX().toByteArray());
-                os.write(Z.getY().toByteArray());
-                os.write(c);
-                os.write(t);
+            // c = KMACXOF256(ke, "", |m|, "PKE") xor m, t = KMACXOF256(ka, m, 448, "PKA"), streamed
+            KeccakSponge keystream = CryptoUtils.newKMACXOF256(ke, "PKE".getBytes());
+            KeccakSponge tag = CryptoUtils.newKMACXOF256(ka, "PKA".getBytes());
+
+            // Writing the file Z || c || t
+            try (FileChannel in = FileChannel.open(Paths.get(dataFilePath), StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(Paths.get(outputFilePath), StandardOpenOption.WRITE,
+                         StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, ByteBuffer.wrap(Z.getX().toByteArray()));
+                writeFully(out, ByteBuffer.wrap(Z.getY().toByteArray()));
+                encryptChunks(in, out, keystream, tag);
+                writeFully(out, ByteBuffer.wrap(tag.squeeze(448)));
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -407,7 +511,9 @@ public class Main {
             byte[] ke = Arrays.copyOfRange(keka, 0, keka.length / 2);
             byte[] ka = Arrays.copyOfRange(keka, keka.length / 2, keka.length);
 
-            byte[] m = CryptoUtils.xorBytes(CryptoUtils.KMACXOF256(ke, "".getBytes(), c.length * 8, "PKE".getBytes()), c);
+            // m = KMACXOF256(ke, "", |c|, "PKE") xor c, decrypted in place
+            byte[] m = c;
+            CryptoUtils.newKMACXOF256(ke, "PKE".getBytes()).squeezeXor(m, 0, m, 0, m.length);
             byte[] tPrime = CryptoUtils.KMACXOF256(ka, m, 448, "PKA".getBytes());
 
             if (Arrays.equals(t, tPrime)) {
@@ -457,17 +563,35 @@ public class Main {
     }
 
     /**
-     * Helper method to read a file's contents into a byte array.
+     * Computes a 512-bit KMACXOF256 of a file's contents.
+     * The file is memory-mapped and absorbed in place rather than read into memory.
+     *
+     * @param filePath the file path
+     * @param key the key
+     * @param customization the customization string
+     * @return the tag, or null if the file could not be read
+     */
+    private static byte[] macFile(String filePath, byte[] key, String customization) {
+        try {
+            return CryptoUtils.KMACXOF256(key, Paths.get(filePath), 512, customization.getBytes());
+        } catch (IOException e) {
+            System.err.println("Error reading the file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Helper method to compute the KT256 hash of a file without loading it into memory.
      *
      * @param filePath the file path
-     * @return the byte array
+     * @return the 512-bit hash, or null if the file cannot be read
      */
-    private static byte[] readFileToByteArray(String filePath) {
+    private static byte[] treeHashFile(String filePath) {
         try {
-            return java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(filePath));
-        } catch (java.io.IOException e) {
+            return CryptoUtils.KT256(Paths.get(filePath), "D".getBytes(), 512);
+        } catch (IOException e) {
             System.err.println("Error reading the file: " + e.getMessage());
-            return new byte[0];
+            return null;
         }
     }
 
@@ -500,18 +624,6 @@ public class Main {
         return new EllipticCurvePoint(x, y);
     }
 
-    private static String bytesToHexString(byte[] bytes) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : bytes) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
-        }
-        return hexString.toString();
-    }
-
     private static byte[] hexStringToBytes(String hexString) {
         int len = hexString.length();
         byte[] data = new byte[len / 2];
@@ -0,0 +1,121 @@
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
+
+/**
+ * Reads the output of an extendable-output function such as KMACXOF256 on demand.
+ * The reader squeezes the sponge straight into the caller's buffers, so it never holds more
+ * than the 200-byte sponge state, and the output length is a long rather than an int number
+ * of bits. Usable both as an InputStream and as a ReadableByteChannel; after the requested
+ * length has been delivered both report end of stream.
+ */
+public class XofReader extends InputStream implements ReadableByteChannel {
+    // Sponge positioned after the absorb phase, squeezed as the output is read
+    private final KeccakSponge sponge;
+    // Number of output bytes still to deliver
+    private long remaining;
+    // Scratch for single-byte reads
+    private final byte[] single = new byte[1];
+    private boolean open = true;
+
+    /**
+     * Creates a reader over the output of the given sponge.
+     *
+     * @param sponge The sponge that has absorbed all of its input, owned by the reader from now on
+     * @param length The number of output bytes to deliver
+     */
+    public XofReader(KeccakSponge sponge, long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Output length must not be negative");
+        }
+        this.sponge = sponge;
+        this.remaining = length;
+    }
+
+    @Override
+    public int read() throws ClosedChannelException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws ClosedChannelException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        ensureOpen();
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining == 0) {
+            return -1;
+        }
+        int n = (int) Math.min(len, remaining);
+        sponge.squeeze(b, off, n);
+        remaining -= n;
+        return n;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws ClosedChannelException {
+        ensureOpen();
+        if (remaining == 0) {
+            return dst.hasRemaining() ? -1 : 0;
+        }
+        int n = (int) Math.min(dst.remaining(), remaining);
+        // Squeeze into the first n bytes of the remaining space only.
+        int limit = dst.limit();
+        dst.limit(dst.position() + n);
+        sponge.squeeze(dst);
+        dst.limit(limit);
+        remaining -= n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws ClosedChannelException {
+        ensureOpen();
+        long skipped = Math.max(0, Math.min(n, remaining));
+        // Output cannot be skipped without computing it, squeeze it into a small scratch block.
+        byte[] scratch = new byte[(int) Math.min(skipped, 136)];
+        for (long left = skipped; left > 0; left -= scratch.length) {
+            sponge.squeeze(scratch, 0, (int) Math.min(left, scratch.length));
+        }
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return open ? (int) Math.min(remaining, Integer.MAX_VALUE) : 0;
+    }
+
+    /**
+     * Returns the number of output bytes still to be delivered.
+     *
+     * @return The remaining output length in bytes
+     */
+    public long remaining() {
+        return remaining;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    /**
+     * Throws if the reader has been closed.
+     *
+     * @throws ClosedChannelException If the reader is closed
+     */
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,513 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Known-answer and equivalence checks for CryptoUtils and for the field and scalar multiplication
+ * arithmetic of EllipticCurve, run with: java CryptoUtilsTest
+ * Exits with an AssertionError naming the first check that fails.
+ * ParallelHash values are the NIST SP 800-185 samples and, for customization strings of 32 bytes
+ * or more where the standard and legacy encodings differ, values from an independent reference;
+ * the same holds for the TurboSHAKE family and the RFC 9861 vectors.
+ * This implementation was inspired by:
+ * - https://csrc.nist.gov/projects/cryptographic-standards-and-guidelines/example-values
+ * - https://www.rfc-editor.org/rfc/rfc9861
+ */
+public class CryptoUtilsTest {
+    public static void main(String[] args) {
+        legacyPadding();
+        parallelHash();
+        turboShake();
+        kangarooTwelve();
+        xorBytes();
+        keccakBatch();
+        goldilocksField();
+        multiplyBase();
+        exponentiation();
+        multiplyPublicKey();
+        System.out.println("All checks passed" + (KeccakProcessor.hasVectorKernel() ? " (vector kernel)" : ""));
+    }
+
+    /**
+     * KMACXOF256 and cSHAKE256 where the 0x04 suffix lands on the last byte of the block, so the
+     * legacy padding leaves out the final 0x80 bit. The expected values were computed with the
+     * original implementation, which every existing tag and cryptogram depends on.
+     */
+    private static void legacyPadding() {
+        byte[] key = "passphrase".getBytes();
+        byte[][] messages = {ptn(133), ptn(269)};
+        String[][] expected = {
+                {"T",
+                        "6794E7ABE65B7A3D37FA4015D1A5B450E3A30CF2186CEF8A3BDBBEFD6804AE3F3B11D1A9F60D284C86C0BBF459E17E58141615E191DF0E0709B3D88C5BF02724",
+                        "D6D39B20BC13D8E724BF0AD3BD8995F6BD15E05484C7557AD5D917D0D9DE065222C292F161BDCF8DEE87687B1A59F98E5013233428C031BED2FA9608A9EF23A3"},
+                {"SKE",
+                        "1B661C593AC24706276B02028DF1F441EE36F6E7B2D2D39AA79A18830BD2A2FD85D62ED9E018147EEC0D5A971B8457B734D8988528FADF3BBA8842FBB79980C0",
+                        "96FE9EBE03A0D878CD75468EF333FE9CFF4B921CECAF820458C0D0EE09D8A1CCE3B2CAC6F5B6452AF3324E39298EE83419502C6BC2E2D0C17793A10E357D92B2"}};
+        for (String[] row : expected) {
+            byte[] s = row[0].getBytes();
+            byte[] batch = new byte[2 * 64];
+            CryptoUtils.macMany(key, Arrays.asList(messages), 512, s, batch, 0);
+            for (int i = 0; i < messages.length; i++) {
+                String name = "KMACXOF256 of " + messages[i].length + " bytes under " + row[0];
+                check(name, row[i + 1], CryptoUtils.KMACXOF256(key, messages[i], 512, s));
+                check(name + " in a batch", row[i + 1], Arrays.copyOfRange(batch, 64 * i, 64 * i + 64));
+            }
+        }
+        // bytepad(N, S) fills one block, so a 135-byte X frames to 271 bytes.
+        byte[] digest = new byte[64];
+        CryptoUtils.hashMany(List.of(ptn(135)), 512, "N".getBytes(), "S".getBytes(), digest, 0);
+        String framed = "871B248EF9C8A20A54CABC77AFD4422DDCA667CDD1624D47549E19BA4733035B0D2855DFFAFF997B040052C28F01E114B2CADFCC0CFD77CE0E9A4D91F35E3096";
+        check("cSHAKE256 of 271 framed bytes", framed,
+                CryptoUtils.cSHAKE256(ptn(135), 512, "N".getBytes(), "S".getBytes()));
+        check("cSHAKE256 of 271 framed bytes in a batch", framed, digest);
+    }
+
+    /**
+     * ParallelHash256 and ParallelHashXOF256 against known answers.
+     */
+    private static void parallelHash() {
+        byte[] x = hex("000102030405060710111213141516172021222324252627");
+        check("ParallelHash256 sample #4",
+                "BC1EF124DA34495E948EAD207DD9842235DA432D2BBC54B4C110E64C451105531B7F2A3E0CE055C02805E7C2DE1FB746AF97A1DD01F43B824E31B87612410429",
+                CryptoUtils.ParallelHash256(x, 8, 512, new byte[0]));
+        check("ParallelHash256 sample #5",
+                "CDF15289B54F6212B4BC270528B49526006DD9B54E2B6ADD1EF6900DDA3963BB33A72491F236969CA8AFAEA29C682D47A393C065B38E29FAE651A2091C833110",
+                CryptoUtils.ParallelHash256(x, 8, 512, "Parallel Data".getBytes()));
+        // A 320-bit customization string takes a two-byte length in encode_string.
+        byte[] a = new byte[40];
+        Arrays.fill(a, (byte) 'A');
+        byte[] b = new byte[40];
+        Arrays.fill(b, (byte) 'B');
+        check("ParallelHash256 with a 40-byte S",
+                "5B2D1F140F88EF4BEEE29ACF4D345DD01E0D2982C1395AE6AE274D622A183D806008643BCDB2E7E1B4FEA81A1820E2CFF6E2CC73823D3AA51A8B9633DDF96868",
+                CryptoUtils.ParallelHash256(x, 8, 512, a));
+        check("ParallelHash256 with another 40-byte S",
+                "7948EC31EF5356678B0788F34A0ED32B4E0BAB446D48B13B4A82CE5B720FD0C530BFC0D88F1CF84B71DA57F01F2DBC8609238FD03860992E199CBCCBADE6E865",
+                CryptoUtils.ParallelHash256(x, 8, 512, b));
+        byte[] c = new byte[300];
+        Arrays.fill(c, (byte) 'C');
+        byte[] message = new byte[512];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) i;
+        }
+        check("ParallelHashXOF256 with a 300-byte S",
+                "EFC245DF5B7B3738216585786A958412C72163D1114E3710F8DCCBE27103C105",
+                CryptoUtils.ParallelHashXOF256(message, 64, 256, c));
+        // z is 135 bytes long here, so the 0x04 suffix fills the block and pad10*1 needs a new one.
+        check("ParallelHash256 with a full final block",
+                "757F3508AEB186D7876770EF354ACC77C4562B9A793537464BA2240A3F88F26B91595F0A0B19C47F8F343C1E84BA8135FBC820D3BFB22AF843CDFF360F4D1EDF",
+                CryptoUtils.ParallelHash256(new byte[2], 1, 512, new byte[0]));
+    }
+
+    /**
+     * TurboSHAKE256 against the RFC 9861 test vectors, and the 12-round cSHAKE and KMAC variants,
+     * which are framed per SP 800-185, with 40-byte customization strings and keys.
+     */
+    private static void turboShake() {
+        check("TurboSHAKE256 of the empty message",
+                "367A329DAFEA871C7802EC67F905AE13C57695DC2C6663C61035F59A18F8E7DB11EDC0E12E91EA60EB6B32DF06DD7F002FBAFABB6E13EC1CC20D995547600DB0",
+                CryptoUtils.TurboSHAKE256(new byte[0], 512));
+        check("TurboSHAKE256 of ptn(17)",
+                "B3BAB0300E6A191FBE6137939835923578794EA54843F5011090FA2F3780A9E5CB22C59D78B40A0FBFF9E672C0FBE0970BD2C845091C6044D687054DA5D8E9C7",
+                CryptoUtils.TurboSHAKE256(ptn(17), 512));
+        byte[] s = "S".repeat(40).getBytes();
+        check("TurboCSHAKE256 with a 40-byte S",
+                "FBC89397383457E91EE5563B7D1BF5BAB92F6D297D19F9391C0FA738BB50B655",
+                CryptoUtils.TurboCSHAKE256(ptn(200), 256, "N".getBytes(), s));
+        check("TurboKMACXOF256 with a 40-byte key and S",
+                "6527E0808026836A426FAB5CB6CE94C3211232FBE6960FC3BA43FBE8F4CA48F11161CEBE2192833C4F814704CA15D485072CA9AA09542A2D0F2F25CF9AF061FF",
+                CryptoUtils.TurboKMACXOF256("K".repeat(40).getBytes(), ptn(133), 512, s));
+        check("TurboKMACXOF256 with a short key and S",
+                "BA4B0135D9C5321F5B2303AD8ECB09591663C43857BE0FB713260A6FD2E68411",
+                CryptoUtils.TurboKMACXOF256("k".getBytes(), ptn(17), 256, "S".getBytes()));
+    }
+
+    /**
+     * KangarooTwelve and KT256 against the RFC 9861 test vectors, and KT256 over a channel against
+     * the in-memory version around the chunk size and the boundaries of the first read batch.
+     */
+    private static void kangarooTwelve() {
+        String[] expected = {
+                "1AC2D450FC3B4205D19DA7BFCA1B37513C0803577AC7167F06FE2CE1F0EF39E5",
+                "2BDA92450E8B147F8A7CB629E784A058EFCA7CF7D8218E02D345DFAA65244A1F",
+                "6BF75FA2239198DB4772E36478F8E19B0F371205F6A9A93A273F51DF37122888",
+                "0C315EBCDEDBF61426DE7DCF8FB725D1E74675D7F5327A5067F367B108ECB67C",
+                "CB552E2EC77D9910701D578B457DDF772C12E322E4EE7FE417F92C758F0D59D0",
+                "8701045E22205345FF4DDA05555CBB5C3AF1A771C2B89BAEF37DB43D9998B9FE",
+                "844D610933B1B9963CBDEB5AE3B6B05CC7CBD67CEEDF883EB678A0A8E0371682"};
+        // The message lengths are 0 and 17^i for i = 0..5.
+        for (int i = 0, n = 0; i < expected.length; i++, n = n == 0 ? 1 : n * 17) {
+            check("KangarooTwelve of ptn(" + n + ")", expected[i],
+                    CryptoUtils.KangarooTwelve(ptn(n), new byte[0], 256));
+        }
+        check("KangarooTwelve with a 41-byte C",
+                "D848C5068CED736F4462159B9867FD4C20B808ACC3D5BC48E0B06BA0A3762EC4",
+                CryptoUtils.KangarooTwelve(new byte[] {(byte) 0xFF}, ptn(41), 256));
+        check("KT256 of the empty message",
+                "B23D2E9CEA9F4904E02BEC06817FC10CE38CE8E93EF4C89E6537076AF8646404E3E8B68107B8833A5D30490AA33482353FD4ADC7148ECB782855003AAEBDE4A9",
+                CryptoUtils.KT256(new byte[0], new byte[0], 512));
+
+        // The first chunk is read on its own, then 1024 chunks per batch.
+        int chunk = 8192, batch = 1024 * chunk;
+        byte[] s = "C".getBytes();
+        for (int n : new int[] {chunk - 1, chunk, chunk + 1, batch - 1, batch, batch + 1,
+                chunk + batch - 1, chunk + batch, chunk + batch + 1}) {
+            byte[] message = ptn(n);
+            try {
+                check("KT256 over a channel of " + n + " bytes", CryptoUtils.KT256(message, s, 512),
+                        CryptoUtils.KT256(Channels.newChannel(new ByteArrayInputStream(message)), s, 512));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * The word-wide xorBytes and xorInPlace against a byte-at-a-time XOR, over random lengths and
+     * offsets so that every alignment and tail length is covered.
+     */
+    private static void xorBytes() {
+        Random random = new Random(487);
+        for (int trial = 0; trial < 2000; trial++) {
+            int len = random.nextInt(300);
+            int firstOff = random.nextInt(16), secondOff = random.nextInt(16), outOff = random.nextInt(16);
+            byte[] first = new byte[firstOff + len + random.nextInt(16)];
+            byte[] second = new byte[secondOff + len + random.nextInt(16)];
+            random.nextBytes(first);
+            random.nextBytes(second);
+            byte[] expected = new byte[len];
+            for (int i = 0; i < len; i++) {
+                expected[i] = (byte) (first[firstOff + i] ^ second[secondOff + i]);
+            }
+            String name = "xor of " + len + " bytes at offsets " + firstOff + ", " + secondOff + ", " + outOff;
+
+            byte[] out = new byte[outOff + len + 8];
+            random.nextBytes(out);
+            byte[] untouched = out.clone();
+            CryptoUtils.xorBytes(first, firstOff, second, secondOff, out, outOff, len);
+            check(name, expected, Arrays.copyOfRange(out, outOff, outOff + len));
+            // Bytes outside the output range must be left alone.
+            System.arraycopy(untouched, outOff, out, outOff, len);
+            check(name + " outside the range", untouched, out);
+
+            byte[] target = first.clone();
+            CryptoUtils.xorInPlace(target, firstOff, second, secondOff, len);
+            check(name + " in place", expected, Arrays.copyOfRange(target, firstOff, firstOff + len));
+
+            byte[] whole = CryptoUtils.xorBytes(Arrays.copyOfRange(first, firstOff, firstOff + len),
+                    Arrays.copyOfRange(second, secondOff, secondOff + len));
+            check(name + " of whole arrays", expected, whole);
+        }
+    }
+
+    /**
+     * KeccakProcessor.keccakBatch against permute on one state at a time, for full and partial
+     * groups. Run with --add-modules jdk.incubator.vector and KeccakVectorKernel on the class
+     * path to cover the Vector API kernel; otherwise this checks the scalar fallback.
+     */
+    private static void keccakBatch() {
+        Random random = new Random(1600);
+        for (int rounds : new int[] {24, 12, 1}) {
+            for (int count = 0; count <= 11; count++) {
+                long[][] states = new long[12][25];
+                long[][] expected = new long[12][];
+                for (int j = 0; j < states.length; j++) {
+                    for (int i = 0; i < 25; i++) {
+                        states[j][i] = random.nextLong();
+                    }
+                    expected[j] = states[j].clone();
+                    if (j < count) {
+                        KeccakProcessor.permute(expected[j], rounds);
+                    }
+                }
+                KeccakProcessor.keccakBatch(states, count, rounds);
+                if (!Arrays.deepEquals(expected, states)) {
+                    throw new AssertionError("keccakBatch of " + count + " states, " + rounds + " rounds"
+                            + (KeccakProcessor.hasVectorKernel() ? " on the vector kernel" : ""));
+                }
+            }
+        }
+    }
+
+    /**
+     * GoldilocksField arithmetic against BigInteger arithmetic mod p, on random elements, on
+     * elements whose limbs are all 2^28, the largest weakly reduced input, and with the output
+     * array being one of the inputs.
+     */
+    private static void goldilocksField() {
+        Random random = new Random(448);
+        BigInteger p = EllipticCurve.p;
+        long[] top = new long[GoldilocksField.LIMBS];
+        Arrays.fill(top, 1L << 28);
+        long[][] scratch = new long[GoldilocksField.INVERT_SCRATCH][GoldilocksField.LIMBS];
+        long[] out = new long[GoldilocksField.LIMBS];
+        for (int trial = 0; trial < 1000; trial++) {
+            long[] a = trial == 0 ? top.clone() : randomElement(random);
+            long[] b = trial <= 1 ? top.clone() : randomElement(random);
+            BigInteger x = GoldilocksField.toBigInteger(a), y = GoldilocksField.toBigInteger(b);
+
+            GoldilocksField.mul(out, a, b);
+            checkField("mul", x.multiply(y).mod(p), out);
+            GoldilocksField.square(out, a);
+            checkField("square", x.multiply(x).mod(p), out);
+            GoldilocksField.add(out, a, b);
+            checkField("add", x.add(y).mod(p), out);
+            GoldilocksField.sub(out, a, b);
+            checkField("sub", x.subtract(y).mod(p), out);
+            GoldilocksField.negate(out, a);
+            checkField("negate", x.negate().mod(p), out);
+            if (x.signum() != 0) {
+                GoldilocksField.invert(out, a, scratch);
+                checkField("invert", x.modInverse(p), out);
+            }
+
+            // The same operations with out being an input.
+            long[] alias = a.clone();
+            GoldilocksField.mul(alias, alias, b);
+            checkField("mul into a", x.multiply(y).mod(p), alias);
+            alias = b.clone();
+            GoldilocksField.mul(alias, a, alias);
+            checkField("mul into b", x.multiply(y).mod(p), alias);
+            alias = a.clone();
+            GoldilocksField.square(alias, alias);
+            checkField("square into a", x.multiply(x).mod(p), alias);
+            alias = a.clone();
+            GoldilocksField.sub(alias, alias, b);
+            checkField("sub into a", x.subtract(y).mod(p), alias);
+            alias = b.clone();
+            GoldilocksField.sub(alias, a, alias);
+            checkField("sub into b", x.subtract(y).mod(p), alias);
+            alias = a.clone();
+            GoldilocksField.negate(alias, alias);
+            checkField("negate into a", x.negate().mod(p), alias);
+            if (x.signum() != 0) {
+                alias = a.clone();
+                GoldilocksField.invert(alias, alias, scratch);
+                checkField("invert into a", x.modInverse(p), alias);
+            }
+        }
+    }
+
+    /**
+     * A random weakly reduced field element, with limbs of 0 and 2^28 more frequent than chance.
+     *
+     * @param random The source of randomness
+     * @return The field element
+     */
+    private static long[] randomElement(Random random) {
+        long[] element = new long[GoldilocksField.LIMBS];
+        for (int i = 0; i < element.length; i++) {
+            switch (random.nextInt(8)) {
+                case 0:
+                    element[i] = 0;
+                    break;
+                case 1:
+                    element[i] = 1L << 28;
+                    break;
+                default:
+                    element[i] = random.nextInt(1 << 28);
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Fails with the check's name unless a field element is weakly reduced and has the expected value.
+     *
+     * @param name The name of the check
+     * @param expected The expected value mod p
+     * @param actual The computed field element
+     */
+    private static void checkField(String name, BigInteger expected, long[] actual) {
+        for (long limb : actual) {
+            if (limb < 0 || limb > 1L << 28) {
+                throw new AssertionError(name + ": limb " + limb + " out of range");
+            }
+        }
+        BigInteger value = GoldilocksField.toBigInteger(actual);
+        if (!value.equals(expected)) {
+            throw new AssertionError(name + ": expected " + expected.toString(16) + " but was " + value.toString(16));
+        }
+    }
+
+    /**
+     * EllipticCurve.multiplyBase against affine double-and-add, on edge scalars, on scalars with
+     * a single bit in every comb column and on random scalars below and above r.
+     */
+    private static void multiplyBase() {
+        Random random = new Random(446);
+        EllipticCurvePoint g = EllipticCurve.getG();
+        List<BigInteger> scalars = new ArrayList<>(List.of(BigInteger.ZERO, BigInteger.ONE, BigInteger.TWO,
+                EllipticCurve.r.subtract(BigInteger.ONE), EllipticCurve.r, EllipticCurve.r.add(BigInteger.ONE),
+                BigInteger.ONE.shiftLeft(446).subtract(BigInteger.ONE), BigInteger.valueOf(-5)));
+        for (int bit = 0; bit < 446; bit += 13) {
+            scalars.add(BigInteger.ONE.shiftLeft(bit));
+        }
+        for (int i = 0; i < 20; i++) {
+            scalars.add(new BigInteger(448 + random.nextInt(64), random));
+        }
+        for (BigInteger s : scalars) {
+            checkPoint("multiplyBase(" + s + ")", referenceMultiply(g, s), EllipticCurve.multiplyBase(s));
+        }
+    }
+
+    /**
+     * EllipticCurve.exponentiation against affine double-and-add for every window width from 2
+     * to 10, on a point other than G and on scalars around the window size, near r and random.
+     */
+    private static void exponentiation() {
+        Random random = new Random(10);
+        EllipticCurvePoint v = EllipticCurve.multiplyBase(new BigInteger(446, random));
+        for (int w = 2; w <= 10; w++) {
+            List<BigInteger> scalars = new ArrayList<>(List.of(BigInteger.TWO, BigInteger.valueOf(3),
+                    BigInteger.ONE.shiftLeft(w).subtract(BigInteger.ONE), BigInteger.ONE.shiftLeft(w).add(BigInteger.ONE),
+                    EllipticCurve.r.subtract(BigInteger.ONE), EllipticCurve.r.add(BigInteger.TWO)));
+            for (int i = 0; i < 4; i++) {
+                scalars.add(new BigInteger(440 + random.nextInt(16), random));
+            }
+            for (BigInteger s : scalars) {
+                checkPoint("exponentiation(V, " + s + ", " + w + ")", referenceMultiply(v, s),
+                        EllipticCurve.exponentiation(v, s, w));
+            }
+        }
+        BigInteger s = new BigInteger(446, random);
+        checkPoint("exponentiation(V, s)", referenceMultiply(v, s), EllipticCurve.exponentiation(v, s));
+    }
+
+    /**
+     * EllipticCurve.multiplyPublicKey against affine double-and-add on keys used repeatedly, so
+     * that the first call goes through exponentiation and the later ones through the cached comb
+     * table, and again after more than 64 other keys have evicted the first ones from the cache.
+     */
+    private static void multiplyPublicKey() {
+        Random random = new Random(25);
+        List<EllipticCurvePoint> keys = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            keys.add(EllipticCurve.multiplyBase(new BigInteger(446, random)));
+        }
+        for (int round = 0; round < 3; round++) {
+            for (EllipticCurvePoint key : keys) {
+                BigInteger k = new BigInteger(446, random).mod(EllipticCurve.r);
+                checkPoint("multiplyPublicKey, use " + (round + 1), referenceMultiply(key, k),
+                        EllipticCurve.multiplyPublicKey(key, k));
+            }
+            if (round == 1) {
+                for (int i = 0; i < 70; i++) {
+                    EllipticCurvePoint other = EllipticCurve.multiplyBase(BigInteger.valueOf(i + 2));
+                    EllipticCurve.multiplyPublicKey(other, BigInteger.TWO);
+                }
+            }
+        }
+    }
+
+    /**
+     * s * G by affine double-and-add on the Edwards curve, the textbook way, as the reference for
+     * the optimized scalar multiplications.
+     *
+     * @param g The point
+     * @param s The scalar, reduced mod r first
+     * @return The point s * g
+     */
+    private static EllipticCurvePoint referenceMultiply(EllipticCurvePoint g, BigInteger s) {
+        BigInteger scalar = s.mod(EllipticCurve.r);
+        EllipticCurvePoint result = new EllipticCurvePoint(BigInteger.ZERO, BigInteger.ONE);
+        for (int i = scalar.bitLength() - 1; i >= 0; i--) {
+            result = referenceAdd(result, result);
+            if (scalar.testBit(i)) {
+                result = referenceAdd(result, g);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The Edwards addition law x3 = (x1 y2 + y1 x2) / (1 + d x1 x2 y1 y2),
+     * y3 = (y1 y2 - x1 x2) / (1 - d x1 x2 y1 y2) in affine coordinates.
+     *
+     * @param a The first point
+     * @param b The second point
+     * @return The point a + b
+     */
+    private static EllipticCurvePoint referenceAdd(EllipticCurvePoint a, EllipticCurvePoint b) {
+        BigInteger p = EllipticCurve.p;
+        BigInteger t = EllipticCurve.d.multiply(a.getX()).multiply(b.getX()).multiply(a.getY()).multiply(b.getY());
+        BigInteger x = a.getX().multiply(b.getY()).add(a.getY().multiply(b.getX()))
+                .multiply(BigInteger.ONE.add(t).modInverse(p));
+        BigInteger y = a.getY().multiply(b.getY()).subtract(a.getX().multiply(b.getX()))
+                .multiply(BigInteger.ONE.subtract(t).modInverse(p));
+        return new EllipticCurvePoint(x.mod(p), y.mod(p));
+    }
+
+    /**
+     * Fails with the check's name unless both points have the same coordinates mod p.
+     *
+     * @param name The name of the check
+     * @param expected The expected point
+     * @param actual The computed point
+     */
+    private static void checkPoint(String name, EllipticCurvePoint expected, EllipticCurvePoint actual) {
+        BigInteger p = EllipticCurve.p;
+        if (!expected.getX().mod(p).equals(actual.getX().mod(p)) || !expected.getY().mod(p).equals(actual.getY().mod(p))) {
+            throw new AssertionError(name + ": expected\n" + expected + "\nbut was\n" + actual);
+        }
+    }
+
+    /**
+     * Fails with the check's name unless both byte arrays are equal.
+     *
+     * @param name The name of the check
+     * @param expected The expected bytes
+     * @param actual The computed bytes
+     */
+    private static void check(String name, byte[] expected, byte[] actual) {
+        check(name, CryptoUtils.bytesToHexString(expected), actual);
+    }
+
+    /**
+     * Fails with the check's name unless the actual bytes match the expected hex string.
+     *
+     * @param name The name of the check
+     * @param expected The expected value in upper-case hex
+     * @param actual The computed value
+     */
+    private static void check(String name, String expected, byte[] actual) {
+        String hex = CryptoUtils.bytesToHexString(actual);
+        if (!hex.equals(expected)) {
+            throw new AssertionError(name + ": expected " + expected + " but was " + hex);
+        }
+    }
+
+    /**
+     * The test pattern of RFC 9861, ptn(n)[i] = i mod 251.
+     *
+     * @param n The length of the pattern
+     * @return The pattern bytes
+     */
+    private static byte[] ptn(int n) {
+        byte[] out = new byte[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = (byte) (i % 251);
+        }
+        return out;
+    }
+
+    /**
+     * Parses a hex string.
+     *
+     * @param hex The hex string, two digits per byte
+     * @return The bytes
+     */
+    private static byte[] hex(String hex) {
+        byte[] out = new byte[hex.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return out;
+    }
+}
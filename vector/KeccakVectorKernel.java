@@ -0,0 +1,230 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * Keccak-p[1600] over several independent states in lockstep, one state per SIMD lane.
+ * Lane i of the states is held in one LongVector across all states, so every step of a round
+ * is a handful of vector instructions for the whole group. Groups are 4 states wide by
+ * default (256-bit vectors, AVX2); the system property keccak.vector.lanes selects 2, 4 or 8,
+ * where 8 needs AVX-512. A partial group is padded with zero states.
+ *
+ * This class needs the jdk.incubator.vector module and is therefore kept out of src/. It is
+ * compiled separately onto the same class path:
+ *     javac --add-modules jdk.incubator.vector -cp out -d out vector/KeccakVectorKernel.java
+ * and only used when the JVM also runs with --add-modules jdk.incubator.vector;
+ * KeccakProcessor.keccakBatch falls back to the scalar kernel otherwise.
+ * This implementation was inspired by:
+ * - https://keccak.team/files/Keccak-implementation-3.2.pdf
+ * - https://openjdk.org/jeps/414
+ */
+public class KeccakVectorKernel {
+    private static final VectorSpecies<Long> SPECIES = species(Integer.getInteger("keccak.vector.lanes", 4));
+    // The 24 round constants of Keccak-f[1600]
+    private static final long[] ROUND_CONSTANTS = {
+            0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL,
+            0x8000000080008000L, 0x000000000000808bL, 0x0000000080000001L,
+            0x8000000080008081L, 0x8000000000008009L, 0x000000000000008aL,
+            0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL,
+            0x000000008000808bL, 0x800000000000008bL, 0x8000000000008089L,
+            0x8000000000008003L, 0x8000000000008002L, 0x8000000000000080L,
+            0x000000000000800aL, 0x800000008000000aL, 0x8000000080008081L,
+            0x8000000000008080L, 0x0000000080000001L, 0x8000000080008008L
+    };
+
+    private KeccakVectorKernel() {
+    }
+
+    /**
+     * Returns the number of states permuted together.
+     *
+     * @return 2, 4 or 8
+     */
+    public static int lanes() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Applies the last rounds rounds of Keccak-f[1600] to the first count states.
+     *
+     * @param states The states, each an array of size 25, overwritten with the permuted states
+     * @param count Number of states from the start of the array to permute
+     * @param rounds Number of rounds, 1 to 24
+     */
+    public static void permute(long[][] states, int count, int rounds) {
+        int width = SPECIES.length();
+        // lanes[i * width + j] = states[first + j][i], the transposed layout the vectors load from
+        long[] lanes = new long[25 * width];
+        for (int first = 0; first < count; first += width) {
+            int group = Math.min(width, count - first);
+            if (group < width) {
+                Arrays.fill(lanes, 0L);
+            }
+            for (int j = 0; j < group; j++) {
+                long[] state = states[first + j];
+                for (int i = 0; i < 25; i++) {
+                    lanes[i * width + j] = state[i];
+                }
+            }
+            permuteLanes(SPECIES, lanes, width, rounds);
+            for (int j = 0; j < group; j++) {
+                long[] state = states[first + j];
+                for (int i = 0; i < 25; i++) {
+                    state[i] = lanes[i * width + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * The vectorised permutation over transposed states, fully unrolled within a round so that
+     * all 25 lanes stay in registers.
+     *
+     * @param species The vector species, width states wide
+     * @param lanes The transposed states
+     * @param width Number of states in the group
+     * @param rounds Number of rounds
+     */
+    private static void permuteLanes(VectorSpecies<Long> species, long[] lanes, int width, int rounds) {
+        LongVector a00 = LongVector.fromArray(species, lanes, 0 * width);
+        LongVector a01 = LongVector.fromArray(species, lanes, 1 * width);
+        LongVector a02 = LongVector.fromArray(species, lanes, 2 * width);
+        LongVector a03 = LongVector.fromArray(species, lanes, 3 * width);
+        LongVector a04 = LongVector.fromArray(species, lanes, 4 * width);
+        LongVector a05 = LongVector.fromArray(species, lanes, 5 * width);
+        LongVector a06 = LongVector.fromArray(species, lanes, 6 * width);
+        LongVector a07 = LongVector.fromArray(species, lanes, 7 * width);
+        LongVector a08 = LongVector.fromArray(species, lanes, 8 * width);
+        LongVector a09 = LongVector.fromArray(species, lanes, 9 * width);
+        LongVector a10 = LongVector.fromArray(species, lanes, 10 * width);
+        LongVector a11 = LongVector.fromArray(species, lanes, 11 * width);
+        LongVector a12 = LongVector.fromArray(species, lanes, 12 * width);
+        LongVector a13 = LongVector.fromArray(species, lanes, 13 * width);
+        LongVector a14 = LongVector.fromArray(species, lanes, 14 * width);
+        LongVector a15 = LongVector.fromArray(species, lanes, 15 * width);
+        LongVector a16 = LongVector.fromArray(species, lanes, 16 * width);
+        LongVector a17 = LongVector.fromArray(species, lanes, 17 * width);
+        LongVector a18 = LongVector.fromArray(species, lanes, 18 * width);
+        LongVector a19 = LongVector.fromArray(species, lanes, 19 * width);
+        LongVector a20 = LongVector.fromArray(species, lanes, 20 * width);
+        LongVector a21 = LongVector.fromArray(species, lanes, 21 * width);
+        LongVector a22 = LongVector.fromArray(species, lanes, 22 * width);
+        LongVector a23 = LongVector.fromArray(species, lanes, 23 * width);
+        LongVector a24 = LongVector.fromArray(species, lanes, 24 * width);
+
+        for (int round = 24 - rounds; round < 24; round++) {
+            // Theta
+            LongVector c0 = a00.lanewise(VectorOperators.XOR, a05).lanewise(VectorOperators.XOR, a10).lanewise(VectorOperators.XOR, a15).lanewise(VectorOperators.XOR, a20);
+            LongVector c1 = a01.lanewise(VectorOperators.XOR, a06).lanewise(VectorOperators.XOR, a11).lanewise(VectorOperators.XOR, a16).lanewise(VectorOperators.XOR, a21);
+            LongVector c2 = a02.lanewise(VectorOperators.XOR, a07).lanewise(VectorOperators.XOR, a12).lanewise(VectorOperators.XOR, a17).lanewise(VectorOperators.XOR, a22);
+            LongVector c3 = a03.lanewise(VectorOperators.XOR, a08).lanewise(VectorOperators.XOR, a13).lanewise(VectorOperators.XOR, a18).lanewise(VectorOperators.XOR, a23);
+            LongVector c4 = a04.lanewise(VectorOperators.XOR, a09).lanewise(VectorOperators.XOR, a14).lanewise(VectorOperators.XOR, a19).lanewise(VectorOperators.XOR, a24);
+            LongVector d0 = c4.lanewise(VectorOperators.XOR, c1.lanewise(VectorOperators.ROL, 1));
+            LongVector d1 = c0.lanewise(VectorOperators.XOR, c2.lanewise(VectorOperators.ROL, 1));
+            LongVector d2 = c1.lanewise(VectorOperators.XOR, c3.lanewise(VectorOperators.ROL, 1));
+            LongVector d3 = c2.lanewise(VectorOperators.XOR, c4.lanewise(VectorOperators.ROL, 1));
+            LongVector d4 = c3.lanewise(VectorOperators.XOR, c0.lanewise(VectorOperators.ROL, 1));
+            // Rho and pi
+            LongVector b00 = a00.lanewise(VectorOperators.XOR, d0);
+            LongVector b16 = a05.lanewise(VectorOperators.XOR, d0).lanewise(VectorOperators.ROL, 36);
+            LongVector b07 = a10.lanewise(VectorOperators.XOR, d0).lanewise(VectorOperators.ROL, 3);
+            LongVector b23 = a15.lanewise(VectorOperators.XOR, d0).lanewise(VectorOperators.ROL, 41);
+            LongVector b14 = a20.lanewise(VectorOperators.XOR, d0).lanewise(VectorOperators.ROL, 18);
+            LongVector b10 = a01.lanewise(VectorOperators.XOR, d1).lanewise(VectorOperators.ROL, 1);
+            LongVector b01 = a06.lanewise(VectorOperators.XOR, d1).lanewise(VectorOperators.ROL, 44);
+            LongVector b17 = a11.lanewise(VectorOperators.XOR, d1).lanewise(VectorOperators.ROL, 10);
+            LongVector b08 = a16.lanewise(VectorOperators.XOR, d1).lanewise(VectorOperators.ROL, 45);
+            LongVector b24 = a21.lanewise(VectorOperators.XOR, d1).lanewise(VectorOperators.ROL, 2);
+            LongVector b20 = a02.lanewise(VectorOperators.XOR, d2).lanewise(VectorOperators.ROL, 62);
+            LongVector b11 = a07.lanewise(VectorOperators.XOR, d2).lanewise(VectorOperators.ROL, 6);
+            LongVector b02 = a12.lanewise(VectorOperators.XOR, d2).lanewise(VectorOperators.ROL, 43);
+            LongVector b18 = a17.lanewise(VectorOperators.XOR, d2).lanewise(VectorOperators.ROL, 15);
+            LongVector b09 = a22.lanewise(VectorOperators.XOR, d2).lanewise(VectorOperators.ROL, 61);
+            LongVector b05 = a03.lanewise(VectorOperators.XOR, d3).lanewise(VectorOperators.ROL, 28);
+            LongVector b21 = a08.lanewise(VectorOperators.XOR, d3).lanewise(VectorOperators.ROL, 55);
+            LongVector b12 = a13.lanewise(VectorOperators.XOR, d3).lanewise(VectorOperators.ROL, 25);
+            LongVector b03 = a18.lanewise(VectorOperators.XOR, d3).lanewise(VectorOperators.ROL, 21);
+            LongVector b19 = a23.lanewise(VectorOperators.XOR, d3).lanewise(VectorOperators.ROL, 56);
+            LongVector b15 = a04.lanewise(VectorOperators.XOR, d4).lanewise(VectorOperators.ROL, 27);
+            LongVector b06 = a09.lanewise(VectorOperators.XOR, d4).lanewise(VectorOperators.ROL, 20);
+            LongVector b22 = a14.lanewise(VectorOperators.XOR, d4).lanewise(VectorOperators.ROL, 39);
+            LongVector b13 = a19.lanewise(VectorOperators.XOR, d4).lanewise(VectorOperators.ROL, 8);
+            LongVector b04 = a24.lanewise(VectorOperators.XOR, d4).lanewise(VectorOperators.ROL, 14);
+            // Chi
+            a00 = b00.lanewise(VectorOperators.XOR, b02.lanewise(VectorOperators.AND_NOT, b01));
+            a01 = b01.lanewise(VectorOperators.XOR, b03.lanewise(VectorOperators.AND_NOT, b02));
+            a02 = b02.lanewise(VectorOperators.XOR, b04.lanewise(VectorOperators.AND_NOT, b03));
+            a03 = b03.lanewise(VectorOperators.XOR, b00.lanewise(VectorOperators.AND_NOT, b04));
+            a04 = b04.lanewise(VectorOperators.XOR, b01.lanewise(VectorOperators.AND_NOT, b00));
+            a05 = b05.lanewise(VectorOperators.XOR, b07.lanewise(VectorOperators.AND_NOT, b06));
+            a06 = b06.lanewise(VectorOperators.XOR, b08.lanewise(VectorOperators.AND_NOT, b07));
+            a07 = b07.lanewise(VectorOperators.XOR, b09.lanewise(VectorOperators.AND_NOT, b08));
+            a08 = b08.lanewise(VectorOperators.XOR, b05.lanewise(VectorOperators.AND_NOT, b09));
+            a09 = b09.lanewise(VectorOperators.XOR, b06.lanewise(VectorOperators.AND_NOT, b05));
+            a10 = b10.lanewise(VectorOperators.XOR, b12.lanewise(VectorOperators.AND_NOT, b11));
+            a11 = b11.lanewise(VectorOperators.XOR, b13.lanewise(VectorOperators.AND_NOT, b12));
+            a12 = b12.lanewise(VectorOperators.XOR, b14.lanewise(VectorOperators.AND_NOT, b13));
+            a13 = b13.lanewise(VectorOperators.XOR, b10.lanewise(VectorOperators.AND_NOT, b14));
+            a14 = b14.lanewise(VectorOperators.XOR, b11.lanewise(VectorOperators.AND_NOT, b10));
+            a15 = b15.lanewise(VectorOperators.XOR, b17.lanewise(VectorOperators.AND_NOT, b16));
+            a16 = b16.lanewise(VectorOperators.XOR, b18.lanewise(VectorOperators.AND_NOT, b17));
+            a17 = b17.lanewise(VectorOperators.XOR, b19.lanewise(VectorOperators.AND_NOT, b18));
+            a18 = b18.lanewise(VectorOperators.XOR, b15.lanewise(VectorOperators.AND_NOT, b19));
+            a19 = b19.lanewise(VectorOperators.XOR, b16.lanewise(VectorOperators.AND_NOT, b15));
+            a20 = b20.lanewise(VectorOperators.XOR, b22.lanewise(VectorOperators.AND_NOT, b21));
+            a21 = b21.lanewise(VectorOperators.XOR, b23.lanewise(VectorOperators.AND_NOT, b22));
+            a22 = b22.lanewise(VectorOperators.XOR, b24.lanewise(VectorOperators.AND_NOT, b23));
+            a23 = b23.lanewise(VectorOperators.XOR, b20.lanewise(VectorOperators.AND_NOT, b24));
+            a24 = b24.lanewise(VectorOperators.XOR, b21.lanewise(VectorOperators.AND_NOT, b20));
+            // Iota
+            a00 = a00.lanewise(VectorOperators.XOR, ROUND_CONSTANTS[round]);
+        }
+
+        a00.intoArray(lanes, 0 * width);
+        a01.intoArray(lanes, 1 * width);
+        a02.intoArray(lanes, 2 * width);
+        a03.intoArray(lanes, 3 * width);
+        a04.intoArray(lanes, 4 * width);
+        a05.intoArray(lanes, 5 * width);
+        a06.intoArray(lanes, 6 * width);
+        a07.intoArray(lanes, 7 * width);
+        a08.intoArray(lanes, 8 * width);
+        a09.intoArray(lanes, 9 * width);
+        a10.intoArray(lanes, 10 * width);
+        a11.intoArray(lanes, 11 * width);
+        a12.intoArray(lanes, 12 * width);
+        a13.intoArray(lanes, 13 * width);
+        a14.intoArray(lanes, 14 * width);
+        a15.intoArray(lanes, 15 * width);
+        a16.intoArray(lanes, 16 * width);
+        a17.intoArray(lanes, 17 * width);
+        a18.intoArray(lanes, 18 * width);
+        a19.intoArray(lanes, 19 * width);
+        a20.intoArray(lanes, 20 * width);
+        a21.intoArray(lanes, 21 * width);
+        a22.intoArray(lanes, 22 * width);
+        a23.intoArray(lanes, 23 * width);
+        a24.intoArray(lanes, 24 * width);
+    }
+
+    /**
+     * Maps a number of lanes to a vector species.
+     *
+     * @param lanes 2, 4 or 8
+     * @return The species with that many 64-bit lanes
+     */
+    private static VectorSpecies<Long> species(int lanes) {
+        switch (lanes) {
+            case 2:
+                return LongVector.SPECIES_128;
+            case 4:
+                return LongVector.SPECIES_256;
+            case 8:
+                return LongVector.SPECIES_512;
+            default:
+                throw new IllegalArgumentException("keccak.vector.lanes must be 2, 4 or 8");
+        }
+    }
+}